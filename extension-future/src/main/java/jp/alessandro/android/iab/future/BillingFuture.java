@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab.future;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous operation of the library
+ * <p>
+ * The callbacks and the functions added to the future are executed on the thread that completed it.
+ * For the operations of {@link BillingProcessorFuture} it is the library's work thread,
+ * so the results can be chained and combined without going through the main thread.
+ * Use {@link BillingFuture#addCallback(FutureCallback, Executor)} to receive the result on another thread.
+ */
+public class BillingFuture<V> implements Future<V> {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCESS = 1;
+    private static final int STATE_FAILURE = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final List<FutureCallback<? super V>> mCallbacks = new ArrayList<>();
+
+    private int mState = STATE_PENDING;
+    private V mResult;
+    private Exception mException;
+
+    BillingFuture() {
+    }
+
+    /**
+     * Creates a future that is already completed with the given value
+     */
+    public static <V> BillingFuture<V> successful(V value) {
+        BillingFuture<V> future = new BillingFuture<>();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * Creates a future that is already completed with the given exception
+     */
+    public static <V> BillingFuture<V> failed(Exception e) {
+        BillingFuture<V> future = new BillingFuture<>();
+        future.setException(e);
+        return future;
+    }
+
+    /**
+     * Combines the futures into one that is completed when all of them succeed
+     * The results keep the same order of the given futures
+     * If any of them fails, the combined future fails with the same exception
+     *
+     * @param futures futures to be combined
+     * @return future containing the list of results
+     */
+    public static <V> BillingFuture<List<V>> allAsList(final List<BillingFuture<V>> futures) {
+        final BillingFuture<List<V>> combined = new BillingFuture<>();
+        final int size = futures.size();
+        final Object[] results = new Object[size];
+        final AtomicInteger remaining = new AtomicInteger(size);
+
+        if (size == 0) {
+            combined.set(new ArrayList<V>());
+            return combined;
+        }
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            futures.get(i).addCallback(new FutureCallback<V>() {
+                @Override
+                public void onSuccess(V result) {
+                    results[index] = result;
+                    if (remaining.decrementAndGet() == 0) {
+                        combined.set(toList(results));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    combined.setException(e);
+                }
+            });
+        }
+        return combined;
+    }
+
+    /**
+     * Combines the futures into one that is completed when all of them succeed
+     *
+     * @see BillingFuture#allAsList(List)
+     */
+    @SafeVarargs
+    public static <V> BillingFuture<List<V>> allAsList(BillingFuture<V>... futures) {
+        return allAsList(Arrays.asList(futures));
+    }
+
+    /**
+     * Adds a callback to be executed on the thread that completes the future
+     * If the future is already completed, the callback is executed immediately on the calling thread
+     */
+    public void addCallback(FutureCallback<? super V> callback) {
+        synchronized (this) {
+            if (mState == STATE_PENDING) {
+                mCallbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    /**
+     * Adds a callback to be executed through the given executor
+     */
+    public void addCallback(final FutureCallback<? super V> callback, final Executor executor) {
+        addCallback(new FutureCallback<V>() {
+            @Override
+            public void onSuccess(final V result) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSuccess(result);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onFailure(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns a new future with the result transformed by the given function
+     * If the function throws an exception, the new future fails with it
+     */
+    public <R> BillingFuture<R> map(final FutureFunction<? super V, ? extends R> function) {
+        final BillingFuture<R> future = new BillingFuture<>();
+        addCallback(new FutureCallback<V>() {
+            @Override
+            public void onSuccess(V result) {
+                R value;
+                try {
+                    value = function.apply(result);
+                } catch (Exception e) {
+                    future.setException(e);
+                    return;
+                }
+                future.set(value);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a new future that is completed by the future returned from the given function
+     * It allows to chain operations, e.g. consume an item after getting the purchases
+     */
+    public <R> BillingFuture<R> then(final AsyncFutureFunction<? super V, R> function) {
+        final BillingFuture<R> future = new BillingFuture<>();
+        addCallback(new FutureCallback<V>() {
+            @Override
+            public void onSuccess(V result) {
+                BillingFuture<R> next;
+                try {
+                    next = function.apply(result);
+                } catch (Exception e) {
+                    future.setException(e);
+                    return;
+                }
+                next.addCallback(future.asCallback());
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Cancels the future
+     * It will not cancel the operation in the library, only its result will be ignored
+     * The callbacks will receive a {@link CancellationException}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(STATE_CANCELLED, null, new CancellationException());
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != STATE_PENDING;
+    }
+
+    /**
+     * Waits for the result
+     * It MUST NOT be called from the thread that completes the future
+     */
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (mState == STATE_PENDING) {
+            wait();
+        }
+        return getResult();
+    }
+
+    /**
+     * Waits for the result at most the given time
+     * It MUST NOT be called from the thread that completes the future
+     */
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (mState == STATE_PENDING) {
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    boolean set(V result) {
+        return complete(STATE_SUCCESS, result, null);
+    }
+
+    boolean setException(Exception e) {
+        return complete(STATE_FAILURE, null, e);
+    }
+
+    FutureCallback<V> asCallback() {
+        return new FutureCallback<V>() {
+            @Override
+            public void onSuccess(V result) {
+                set(result);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                setException(e);
+            }
+        };
+    }
+
+    private boolean complete(int state, V result, Exception e) {
+        List<FutureCallback<? super V>> callbacks;
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                return false;
+            }
+            mState = state;
+            mResult = result;
+            mException = e;
+            callbacks = new ArrayList<>(mCallbacks);
+            mCallbacks.clear();
+            notifyAll();
+        }
+        for (FutureCallback<? super V> callback : callbacks) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+
+    private void notifyCallback(FutureCallback<? super V> callback) {
+        V result;
+        Exception e;
+        synchronized (this) {
+            result = mResult;
+            e = mException;
+        }
+        if (e == null) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(e);
+        }
+    }
+
+    private V getResult() throws ExecutionException {
+        if (mState == STATE_CANCELLED) {
+            throw new CancellationException();
+        }
+        if (mState == STATE_FAILURE) {
+            throw new ExecutionException(mException);
+        }
+        return mResult;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> List<V> toList(Object[] results) {
+        List<V> list = new ArrayList<>(results.length);
+        for (Object result : results) {
+            list.add((V) result);
+        }
+        return list;
+    }
+}
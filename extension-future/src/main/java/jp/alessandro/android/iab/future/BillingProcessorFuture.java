@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab.future;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import jp.alessandro.android.iab.BillingContext;
+import jp.alessandro.android.iab.BillingException;
+import jp.alessandro.android.iab.BillingProcessor;
+import jp.alessandro.android.iab.ItemDetails;
+import jp.alessandro.android.iab.Purchase;
+import jp.alessandro.android.iab.PurchaseType;
+import jp.alessandro.android.iab.Purchases;
+import jp.alessandro.android.iab.handler.ConsumeItemHandler;
+import jp.alessandro.android.iab.handler.ConsumeItemsHandler;
+import jp.alessandro.android.iab.handler.ItemDetailsHandler;
+import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.handler.PurchasesHandler;
+import jp.alessandro.android.iab.handler.StartActivityHandler;
+import jp.alessandro.android.iab.response.ConsumeResponse;
+
+/**
+ * Exposes the operations of {@link BillingProcessor} as {@link BillingFuture}
+ * <p>
+ * The futures are completed on the library's work thread instead of the main thread,
+ * so they can be chained and combined without extra thread switches.
+ * The purchase result is still delivered on the main thread through PurchaseHandler.
+ */
+public class BillingProcessorFuture {
+
+    private final BillingContext mBillingContext;
+    private final PurchaseHandler mPurchaseHandler;
+
+    private BillingProcessor mBillingProcessor;
+
+    public BillingProcessorFuture(BillingContext context, PurchaseHandler purchaseHandler) {
+        mBillingContext = context;
+        mPurchaseHandler = purchaseHandler;
+    }
+
+    /**
+     * Checks if the in-app billing service is available
+     *
+     * @param context application context
+     * @return true if it is available
+     */
+    public static boolean isServiceAvailable(Context context) {
+        return BillingProcessor.isServiceAvailable(context);
+    }
+
+    /**
+     * Starts to purchase a consumable/non-consumable item or a subscription
+     * This will be executed from UI Thread
+     *
+     * @param activity         activity calling this method
+     * @param requestCode      request code for the billing activity
+     * @param itemId           product item id
+     * @param purchaseType     IN_APP or SUBSCRIPTION
+     * @param developerPayload optional argument to be sent back with the purchase information. It helps to identify the user
+     */
+    public BillingFuture<Void> startPurchase(Activity activity,
+                                             int requestCode,
+                                             String itemId,
+                                             PurchaseType purchaseType,
+                                             String developerPayload) {
+
+        BillingFuture<Void> future = new BillingFuture<>();
+        getBillingProcessor().startPurchase(activity, requestCode, itemId, purchaseType, developerPayload,
+                new CompletionHandler(future));
+        return future;
+    }
+
+    /**
+     * Updates a subscription (Upgrade / Downgrade)
+     * This will be executed from UI Thread
+     * This can only be done on API version 5
+     * Even if you set up to use the API version 3
+     * It will automatically use API version 5
+     * IMPORTANT: In some devices it may not work
+     *
+     * @param activity         activity calling this method
+     * @param requestCode
+     * @param oldItemIds       a list of item ids to be updated
+     * @param itemId           new subscription item id
+     * @param developerPayload optional argument to be sent back with the purchase information. It helps to identify the user
+     */
+    public BillingFuture<Void> updateSubscription(Activity activity,
+                                                  int requestCode,
+                                                  List<String> oldItemIds,
+                                                  String itemId,
+                                                  String developerPayload) {
+
+        BillingFuture<Void> future = new BillingFuture<>();
+        getBillingProcessor().updateSubscription(activity, requestCode, oldItemIds, itemId, developerPayload,
+                new CompletionHandler(future));
+        return future;
+    }
+
+    /**
+     * Consumes previously purchased item to be purchased again
+     * This will be executed from Work Thread
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param itemId consumable item id
+     */
+    public BillingFuture<Void> consumePurchase(String itemId) {
+        BillingFuture<Void> future = new BillingFuture<>();
+        getBillingProcessor().consumePurchase(itemId, new CompletionHandler(future));
+        return future;
+    }
+
+    /**
+     * Consumes previously purchased item to be purchased again
+     * It uses the token of the given purchase directly instead of loading the inventory to find it
+     * This will be executed from Work Thread
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param purchase purchase to be consumed
+     */
+    public BillingFuture<Void> consumePurchase(Purchase purchase) {
+        BillingFuture<Void> future = new BillingFuture<>();
+        getBillingProcessor().consumePurchase(purchase, new CompletionHandler(future));
+        return future;
+    }
+
+    /**
+     * Consumes many previously purchased items at once
+     * This will be executed from Work Thread
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param itemIds consumable item ids
+     */
+    public BillingFuture<List<ConsumeResponse>> consumePurchases(Collection<String> itemIds) {
+        final BillingFuture<List<ConsumeResponse>> future = new BillingFuture<>();
+        getBillingProcessor().consumePurchases(itemIds, new ConsumeItemsHandler() {
+            @Override
+            public void onSuccess(List<ConsumeResponse> responses) {
+                future.set(responses);
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the information about inventory of purchases made by a user from your app
+     * This method will get all the purchases even if there are more than 500
+     * This will be executed from Work Thread
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#QueryPurchases
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     */
+    public BillingFuture<Purchases> getPurchases(PurchaseType purchaseType) {
+        final BillingFuture<Purchases> future = new BillingFuture<>();
+        getBillingProcessor().getPurchases(purchaseType, new PurchasesHandler() {
+            @Override
+            public void onSuccess(Purchases purchases) {
+                future.set(purchases);
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get item details (SKU)
+     * This will be executed from Work Thread
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#QueryDetails
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param itemIds      list of SKU ids to be loaded
+     */
+    public BillingFuture<ItemDetails> getItemDetails(PurchaseType purchaseType, ArrayList<String> itemIds) {
+        final BillingFuture<ItemDetails> future = new BillingFuture<>();
+        getBillingProcessor().getItemDetailsOnce(purchaseType, itemIds, new ItemDetailsHandler() {
+            @Override
+            public void onSuccess(ItemDetails itemDetails) {
+                future.set(itemDetails);
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Checks the purchase response from Google
+     * The result will be sent through PurchaseHandler
+     * This method MUST be called from UI Thread
+     *
+     * @param requestCode
+     * @param resultCode
+     * @param data
+     * @return true if the result was processed in the library
+     */
+    public boolean onActivityResult(int requestCode, int resultCode, Intent data) {
+        return getBillingProcessor().onActivityResult(requestCode, resultCode, data);
+    }
+
+    /**
+     * Cancel the all purchase flows
+     * It will clear the pending purchase flows and ignore any event until a new request
+     * The pending futures will not be completed
+     * <p>
+     * If you don't need the BillingProcessor any more,
+     * call directly {@link BillingProcessorFuture#release()} instead
+     * <p>
+     * By canceling it will not cancel the purchase process
+     * since the purchase process is not controlled by the app.
+     */
+    public void cancel() {
+        getBillingProcessor().cancel();
+    }
+
+    /**
+     * Release the handlers
+     * By releasing it will not cancel the purchase process
+     * since the purchase process is not controlled by the app.
+     * Once you release it, you MUST to create a new instance
+     */
+    public void release() {
+        getBillingProcessor().release();
+    }
+
+    public BillingProcessor getBillingProcessor() {
+        if (mBillingProcessor == null) {
+            mBillingProcessor = new WorkThreadBillingProcessor(mBillingContext, mPurchaseHandler);
+        }
+        return mBillingProcessor;
+    }
+
+    /**
+     * BillingProcessor that delivers the results of the operations on its work thread
+     */
+    private static class WorkThreadBillingProcessor extends BillingProcessor {
+
+        WorkThreadBillingProcessor(BillingContext context, PurchaseHandler purchaseHandler) {
+            super(context, purchaseHandler);
+        }
+
+        @Override
+        protected Handler getEventHandler() {
+            return getWorkHandler();
+        }
+    }
+
+    /**
+     * Completes a future of an operation that has no result
+     */
+    private static class CompletionHandler implements StartActivityHandler, ConsumeItemHandler {
+
+        private final BillingFuture<Void> mFuture;
+
+        CompletionHandler(BillingFuture<Void> future) {
+            mFuture = future;
+        }
+
+        @Override
+        public void onSuccess() {
+            mFuture.set(null);
+        }
+
+        @Override
+        public void onError(BillingException e) {
+            mFuture.setException(e);
+        }
+    }
+}
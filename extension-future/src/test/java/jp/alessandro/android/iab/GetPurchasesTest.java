@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.RemoteException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import jp.alessandro.android.iab.future.BillingFuture;
+import jp.alessandro.android.iab.future.BillingProcessorFuture;
+import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.response.PurchaseResponse;
+import jp.alessandro.android.iab.util.DataConverter;
+import jp.alessandro.android.iab.util.ServiceStub;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class GetPurchasesTest {
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+    private final BillingContext mContext = mDataConverter.newBillingContext(RuntimeEnvironment.application);
+    private final ServiceStub mServiceStub = new ServiceStub();
+
+    private BillingProcessorFuture mProcessor;
+    private Handler mWorkHandler;
+
+    @Before
+    public void setUp() {
+        mProcessor = new BillingProcessorFuture(mContext, new PurchaseHandler() {
+            @Override
+            public void call(PurchaseResponse response) {
+
+            }
+        });
+        BillingProcessor billingProcessor = mProcessor.getBillingProcessor();
+        mWorkHandler = billingProcessor.getWorkHandler();
+    }
+
+    @Test
+    public void getInAppPurchases() throws InterruptedException, ExecutionException, RemoteException {
+        getPurchases(PurchaseType.IN_APP);
+    }
+
+    @Test
+    public void getSubscriptionPurchases() throws InterruptedException, ExecutionException, RemoteException {
+        getPurchases(PurchaseType.SUBSCRIPTION);
+    }
+
+    @Test
+    public void getInAppPurchasesError() throws InterruptedException, RemoteException {
+        getPurchasesError(PurchaseType.IN_APP);
+    }
+
+    @Test
+    public void getSubscriptionPurchasesError() throws InterruptedException, RemoteException {
+        getPurchasesError(PurchaseType.SUBSCRIPTION);
+    }
+
+    @Test
+    public void getAllPurchases() throws InterruptedException, ExecutionException, RemoteException {
+        int size = 10;
+        Bundle responseBundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, size, null);
+        Bundle stubBundle = new Bundle();
+        stubBundle.putParcelable(ServiceStub.GET_PURCHASES, responseBundle);
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        BillingFuture<List<Purchases>> future = BillingFuture.allAsList(
+                mProcessor.getPurchases(PurchaseType.IN_APP),
+                mProcessor.getPurchases(PurchaseType.SUBSCRIPTION));
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToLastPostedRunnable();
+
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.get()).hasSize(2);
+        for (Purchases purchases : future.get()) {
+            assertThat(purchases.getSize()).isEqualTo(size);
+        }
+    }
+
+    private void getPurchases(PurchaseType type) throws InterruptedException, ExecutionException, RemoteException {
+        int size = 10;
+        Bundle responseBundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, size, null);
+        Bundle stubBundle = new Bundle();
+        stubBundle.putParcelable(ServiceStub.GET_PURCHASES, responseBundle);
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        BillingFuture<Purchases> future = mProcessor.getPurchases(type);
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToLastPostedRunnable();
+
+        assertThat(future.isDone()).isTrue();
+
+        Purchases purchases = future.get();
+        assertThat(purchases.getSize()).isEqualTo(size);
+
+        List<Purchase> purchaseList = purchases.getAll();
+        for (Purchase item : purchaseList) {
+            assertThat(purchases.hasItemId(item.getSku())).isTrue();
+            assertThat(purchases.getByPurchaseId(item.getSku())).isNotNull();
+        }
+    }
+
+    private void getPurchasesError(PurchaseType type) throws InterruptedException, RemoteException {
+        Bundle stubBundle = new Bundle();
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        BillingFuture<Purchases> future = mProcessor.getPurchases(type);
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToLastPostedRunnable();
+
+        assertThat(future.isDone()).isTrue();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            BillingException cause = (BillingException) e.getCause();
+            assertThat(cause.getErrorCode()).isEqualTo(Constants.ERROR_UNEXPECTED_TYPE);
+            assertThat(cause.getMessage()).isEqualTo(Constants.ERROR_MSG_UNEXPECTED_BUNDLE_RESPONSE_NULL);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab.future;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.alessandro.android.iab.BillingException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class BillingFutureTest {
+
+    @Test
+    public void setAndGet() throws InterruptedException, ExecutionException {
+        BillingFuture<String> future = new BillingFuture<>();
+        assertThat(future.isDone()).isFalse();
+        assertThat(future.set("result")).isTrue();
+        assertThat(future.set("other")).isFalse();
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.get()).isEqualTo("result");
+    }
+
+    @Test
+    public void setException() throws InterruptedException {
+        BillingException exception = new BillingException(-1, "error");
+        BillingFuture<String> future = BillingFuture.failed(exception);
+        try {
+            future.get();
+            fail("It should have thrown an exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isSameAs(exception);
+        }
+    }
+
+    @Test
+    public void getWithTimeout() throws InterruptedException, ExecutionException {
+        BillingFuture<String> future = new BillingFuture<>();
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail("It should have thrown an exception");
+        } catch (TimeoutException e) {
+            assertThat(future.isDone()).isFalse();
+        }
+    }
+
+    @Test
+    public void cancel() throws InterruptedException, ExecutionException {
+        final AtomicInteger failures = new AtomicInteger();
+        BillingFuture<String> future = new BillingFuture<>();
+        future.addCallback(new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                fail("It should not succeed");
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                assertThat(e).isInstanceOf(CancellationException.class);
+                failures.incrementAndGet();
+            }
+        });
+        assertThat(future.cancel(true)).isTrue();
+        assertThat(future.set("result")).isFalse();
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(failures.get()).isEqualTo(1);
+        try {
+            future.get();
+            fail("It should have thrown an exception");
+        } catch (CancellationException e) {
+            assertThat(future.isDone()).isTrue();
+        }
+    }
+
+    @Test
+    public void callbackRunsOnCompletingThread() {
+        final AtomicInteger calls = new AtomicInteger();
+        BillingFuture<String> future = new BillingFuture<>();
+        future.addCallback(new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                assertThat(result).isEqualTo("result");
+                calls.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail("It should not fail");
+            }
+        });
+        assertThat(calls.get()).isZero();
+        future.set("result");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void callbackWithExecutor() {
+        final AtomicInteger executions = new AtomicInteger();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executions.incrementAndGet();
+                command.run();
+            }
+        };
+        BillingFuture<String> future = BillingFuture.successful("result");
+        future.addCallback(new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                assertThat(result).isEqualTo("result");
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                fail("It should not fail");
+            }
+        }, executor);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void map() throws InterruptedException, ExecutionException {
+        BillingFuture<String> future = new BillingFuture<>();
+        BillingFuture<Integer> mapped = future.map(new FutureFunction<String, Integer>() {
+            @Override
+            public Integer apply(String input) {
+                return input.length();
+            }
+        });
+        future.set("result");
+        assertThat(mapped.get()).isEqualTo(6);
+    }
+
+    @Test
+    public void mapThrowsException() throws InterruptedException {
+        final BillingException exception = new BillingException(-1, "error");
+        BillingFuture<Integer> mapped = BillingFuture.successful("result").map(new FutureFunction<String, Integer>() {
+            @Override
+            public Integer apply(String input) throws BillingException {
+                throw exception;
+            }
+        });
+        try {
+            mapped.get();
+            fail("It should have thrown an exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isSameAs(exception);
+        }
+    }
+
+    @Test
+    public void then() throws InterruptedException, ExecutionException {
+        final BillingFuture<Integer> next = new BillingFuture<>();
+        BillingFuture<Integer> chained = BillingFuture.successful("result").then(new AsyncFutureFunction<String, Integer>() {
+            @Override
+            public BillingFuture<Integer> apply(String input) {
+                return next;
+            }
+        });
+        assertThat(chained.isDone()).isFalse();
+        next.set(1);
+        assertThat(chained.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void allAsList() throws InterruptedException, ExecutionException {
+        BillingFuture<String> first = new BillingFuture<>();
+        BillingFuture<String> second = new BillingFuture<>();
+        BillingFuture<List<String>> all = BillingFuture.allAsList(first, second);
+
+        second.set("second");
+        assertThat(all.isDone()).isFalse();
+        first.set("first");
+
+        assertThat(all.get()).containsExactly("first", "second");
+    }
+
+    @Test
+    public void allAsListFailed() throws InterruptedException {
+        BillingException exception = new BillingException(-1, "error");
+        BillingFuture<String> first = new BillingFuture<>();
+        BillingFuture<List<String>> all = BillingFuture.allAsList(first, BillingFuture.<String>failed(exception));
+        try {
+            all.get();
+            fail("It should have thrown an exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isSameAs(exception);
+        }
+    }
+}
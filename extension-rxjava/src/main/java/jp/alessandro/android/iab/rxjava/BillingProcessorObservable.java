@@ -259,7 +259,7 @@ public class BillingProcessorObservable {
         return Observable.fromEmitter(new Action1<Emitter<ItemDetails>>() {
             @Override
             public void call(final Emitter<ItemDetails> emitter) {
-                getBillingProcessor().getItemDetails(purchaseType, itemIds, new ItemDetailsHandler() {
+                getBillingProcessor().getItemDetailsOnce(purchaseType, itemIds, new ItemDetailsHandler() {
                     @Override
                     public void onSuccess(ItemDetails itemDetails) {
                         emitter.onNext(itemDetails);
@@ -19,33 +19,93 @@
 package jp.alessandro.android.iab;
 
 import android.content.Context;
+import android.text.TextUtils;
+
+import java.security.PublicKey;
+import java.util.concurrent.Executor;
 
 import jp.alessandro.android.iab.logger.DiscardLogger;
 import jp.alessandro.android.iab.logger.Logger;
 
 public class BillingContext {
 
+    public static final long DEFAULT_WORK_THREAD_IDLE_TIMEOUT_MILLIS = 60000;
+    public static final int DEFAULT_VERIFIED_PURCHASE_CACHE_SIZE = 100;
+
     private final Context mContext;
     private final String mPublicKeyBase64;
+    private final PublicKey mPublicKey;
     private final BillingApi mApiVersion;
     private final Logger mLogger;
+    private final long mWorkThreadIdleTimeoutMillis;
+    private final ItemCache mItemCache;
+    private final ItemDiskCache mItemDiskCache;
+    private final boolean mPurchasesSnapshotEnabled;
+    private final EntitlementStore mEntitlementStore;
+    private final VerifiedPurchaseCache mVerifiedPurchaseCache;
+    private final Executor mVerificationExecutor;
+    private final boolean mDropInvalidPurchases;
+    private final boolean mLazyJsonParsingEnabled;
+    private final boolean mCompactModeEnabled;
 
     /**
      * Context that contains all information to execute the library
      *
      * @param context         application context
      * @param publicKeyBase64 rsa public key generated by Google Play Developer Console
+     * @param publicKey       the same key already decoded, it is null if publicKeyBase64 is empty
      * @param apiVersion      google api version (The library supports version 3 & 5)
      * @param logger          interface to print the library's log
+     * @param workThreadIdleTimeoutMillis time to keep the work thread alive without operations
+     * @param itemCache       cache of item details, it may be null
+     * @param itemDiskCache   persistent cache of item details, it may be null
+     * @param purchasesSnapshotEnabled true to keep the loaded purchases in memory
+     * @param entitlementStore persistent store of purchases, it may be null
+     * @param verifiedPurchaseCache cache of the purchases already verified, it may be null
+     * @param verificationExecutor executor to verify the purchases in parallel, it may be null
+     * @param dropInvalidPurchases true to skip the purchases that fail verification instead of failing all of them
+     * @param lazyJsonParsingEnabled true to decode the fields of items and purchases when they are got
+     * @param compactModeEnabled true to keep a single copy of the data of items and purchases
      */
     private BillingContext(Context context,
                            String publicKeyBase64,
+                           PublicKey publicKey,
                            BillingApi apiVersion,
-                           Logger logger) {
+                           Logger logger,
+                           long workThreadIdleTimeoutMillis,
+                           ItemCache itemCache,
+                           ItemDiskCache itemDiskCache,
+                           boolean purchasesSnapshotEnabled,
+                           EntitlementStore entitlementStore,
+                           VerifiedPurchaseCache verifiedPurchaseCache,
+                           Executor verificationExecutor,
+                           boolean dropInvalidPurchases,
+                           boolean lazyJsonParsingEnabled,
+                           boolean compactModeEnabled) {
         mContext = context;
         mPublicKeyBase64 = publicKeyBase64;
+        mPublicKey = publicKey;
         mApiVersion = apiVersion;
         mLogger = logger;
+        mWorkThreadIdleTimeoutMillis = workThreadIdleTimeoutMillis;
+        mItemCache = itemCache;
+        mItemDiskCache = itemDiskCache;
+        mPurchasesSnapshotEnabled = purchasesSnapshotEnabled;
+        mEntitlementStore = entitlementStore;
+        mVerifiedPurchaseCache = verifiedPurchaseCache;
+        mVerificationExecutor = verificationExecutor;
+        mDropInvalidPurchases = dropInvalidPurchases;
+        mLazyJsonParsingEnabled = lazyJsonParsingEnabled;
+        mCompactModeEnabled = compactModeEnabled;
+    }
+
+    /**
+     * Store to check the ownership of the items without binding the service
+     *
+     * @return the store or null if it was not enabled in {@link Builder#setEntitlementStoreEnabled(boolean)}
+     */
+    public EntitlementStore getEntitlementStore() {
+        return mEntitlementStore;
     }
 
     Context getContext() {
@@ -56,6 +116,10 @@ public class BillingContext {
         return mPublicKeyBase64;
     }
 
+    PublicKey getPublicKey() {
+        return mPublicKey;
+    }
+
     int getApiVersion() {
         return mApiVersion.getValue();
     }
@@ -64,15 +128,63 @@ public class BillingContext {
         return mLogger;
     }
 
+    long getWorkThreadIdleTimeout() {
+        return mWorkThreadIdleTimeoutMillis;
+    }
+
+    ItemCache getItemCache() {
+        return mItemCache;
+    }
+
+    ItemDiskCache getItemDiskCache() {
+        return mItemDiskCache;
+    }
+
+    boolean isPurchasesSnapshotEnabled() {
+        return mPurchasesSnapshotEnabled;
+    }
+
+    VerifiedPurchaseCache getVerifiedPurchaseCache() {
+        return mVerifiedPurchaseCache;
+    }
+
+    Executor getVerificationExecutor() {
+        return mVerificationExecutor;
+    }
+
+    boolean shouldDropInvalidPurchases() {
+        return mDropInvalidPurchases;
+    }
+
+    boolean isLazyJsonParsingEnabled() {
+        return mLazyJsonParsingEnabled;
+    }
+
+    boolean isCompactModeEnabled() {
+        return mCompactModeEnabled;
+    }
+
     public static class Builder {
 
         Context context;
         String publicKeyBase64;
         BillingApi apiVersion;
         Logger logger;
+        long workThreadIdleTimeoutMillis;
+        ItemCache itemCache;
+        boolean itemDiskCacheEnabled;
+        boolean purchasesSnapshotEnabled;
+        boolean entitlementStoreEnabled;
+        int verifiedPurchaseCacheSize;
+        Executor verificationExecutor;
+        boolean dropInvalidPurchases;
+        boolean lazyJsonParsingEnabled;
+        boolean compactModeEnabled;
 
         public Builder() {
             logger = new DiscardLogger();
+            workThreadIdleTimeoutMillis = DEFAULT_WORK_THREAD_IDLE_TIMEOUT_MILLIS;
+            verifiedPurchaseCacheSize = DEFAULT_VERIFIED_PURCHASE_CACHE_SIZE;
         }
 
         public Builder setContext(Context context) {
@@ -95,12 +207,151 @@ public class BillingContext {
             return this;
         }
 
+        /**
+         * The work thread is started on demand and quits after being idle for this time
+         * It will be started again by the next operation
+         *
+         * @param timeoutMillis idle time in milliseconds. Zero or less keeps the thread until release is called
+         */
+        public Builder setWorkThreadIdleTimeout(long timeoutMillis) {
+            this.workThreadIdleTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Keeps the item details in memory, so getItemDetails requests only the items that are not cached
+         * By default there is no cache
+         *
+         * @param itemCache cache to be used, it can be shared between contexts
+         */
+        public Builder setItemCache(ItemCache itemCache) {
+            this.itemCache = itemCache;
+            return this;
+        }
+
+        /**
+         * Stores the item details in the app-private storage
+         * getItemDetails will deliver the stored items first and then refresh them from Google Play,
+         * calling the handler a second time only if something changed
+         * getItemDetailsOnce, the future and the observable deliver only the items loaded from Google Play
+         * By default it is disabled
+         *
+         * @param enabled true to store the item details
+         */
+        public Builder setItemDiskCacheEnabled(boolean enabled) {
+            this.itemDiskCacheEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Keeps the purchases loaded by getPurchases in memory, so the next calls are answered without the service
+         * They are loaded again after a purchase, a consume, a service error or calling refreshPurchases
+         * By default it is disabled
+         *
+         * @param enabled true to keep the purchases in memory
+         */
+        public Builder setPurchasesSnapshotEnabled(boolean enabled) {
+            this.purchasesSnapshotEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Stores the verified purchases in the app-private storage
+         * so {@link EntitlementStore#isOwned(String)} works without binding the service, even when offline
+         * By default it is disabled
+         *
+         * @param enabled true to store the purchases
+         */
+        public Builder setEntitlementStoreEnabled(boolean enabled) {
+            this.entitlementStoreEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Purchases returned again with the same data and signature are not verified again
+         * By default the last {@link BillingContext#DEFAULT_VERIFIED_PURCHASE_CACHE_SIZE} purchases are kept
+         *
+         * @param size maximum number of verified purchases to keep. Zero or less verifies every purchase
+         */
+        public Builder setVerifiedPurchaseCacheSize(int size) {
+            this.verifiedPurchaseCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Verifies the purchases returned by getPurchases in parallel, using the work thread and this executor
+         * The next page of purchases is also requested while the previous one is being verified
+         * A bounded pool like {@link java.util.concurrent.Executors#newFixedThreadPool(int)} is recommended
+         * By default the purchases are verified one after another on the work thread
+         *
+         * @param executor executor to run the verification tasks, null to disable it
+         */
+        public Builder setVerificationExecutor(Executor executor) {
+            this.verificationExecutor = executor;
+            return this;
+        }
+
+        /**
+         * By default getPurchases fails if any purchase does not pass the signature verification
+         * When enabled, those purchases are logged and left out, and the verified ones are returned
+         *
+         * @param drop true to leave out the purchases that fail verification
+         */
+        public Builder setDropInvalidPurchases(boolean drop) {
+            this.dropInvalidPurchases = drop;
+            return this;
+        }
+
+        /**
+         * Items and purchases loaded from Google Play keep only their original json and the position of each field
+         * Every field is decoded the first time its getter is called, so the fields never read are never decoded
+         * By default all the fields are decoded when they are loaded
+         *
+         * @param enabled true to decode the fields on demand
+         */
+        public Builder setLazyJsonParsingEnabled(boolean enabled) {
+            this.lazyJsonParsingEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Keeps a single copy of the data of each item and purchase loaded from Google Play
+         * Items and purchases keep only their original json and the position of each field,
+         * and decode the fields every time they are got, so the json is the one returned by Google Play.
+         * It takes precedence over {@link Builder#setLazyJsonParsingEnabled(boolean)}:
+         * when both are enabled, the decoded fields are not kept either.
+         * By default both the original json and the fields are kept
+         *
+         * @param enabled true to use the compact representation
+         */
+        public Builder setCompactModeEnabled(boolean enabled) {
+            this.compactModeEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Builds the context decoding the public key only once
+         *
+         * @throws IllegalArgumentException if the public key is not a valid Base64-encoded RSA key
+         */
         public BillingContext build() {
+            PublicKey publicKey = TextUtils.isEmpty(publicKeyBase64) ? null : Security.decodePublicKey(publicKeyBase64);
             return new BillingContext(
                     context,
                     publicKeyBase64,
+                    publicKey,
                     apiVersion,
-                    logger
+                    logger,
+                    workThreadIdleTimeoutMillis,
+                    itemCache,
+                    itemDiskCacheEnabled && context != null ? ItemDiskCache.getInstance(context, logger) : null,
+                    purchasesSnapshotEnabled,
+                    entitlementStoreEnabled && context != null ? EntitlementStore.getInstance(context, publicKey, logger) : null,
+                    verifiedPurchaseCacheSize > 0 ? new VerifiedPurchaseCache(verifiedPurchaseCacheSize) : null,
+                    verificationExecutor,
+                    dropInvalidPurchases,
+                    lazyJsonParsingEnabled,
+                    compactModeEnabled
             );
         }
     }
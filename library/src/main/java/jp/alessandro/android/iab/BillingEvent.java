@@ -0,0 +1,219 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import java.util.List;
+
+import jp.alessandro.android.iab.handler.ConsumeItemHandler;
+import jp.alessandro.android.iab.handler.ConsumeItemsHandler;
+import jp.alessandro.android.iab.handler.ErrorHandler;
+import jp.alessandro.android.iab.handler.InventoryHandler;
+import jp.alessandro.android.iab.handler.ItemDetailsHandler;
+import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.handler.PurchasesHandler;
+import jp.alessandro.android.iab.handler.StartActivityHandler;
+import jp.alessandro.android.iab.response.ConsumeResponse;
+import jp.alessandro.android.iab.response.PurchaseResponse;
+
+/**
+ * Result of an operation to be delivered to its handler
+ * <p>
+ * The events are recycled after being delivered, in the same way as {@link android.os.Message},
+ * so posting results does not allocate a new Runnable every time.
+ * An event MUST NOT be used after it was posted.
+ */
+final class BillingEvent implements Runnable {
+
+    private static final int ERROR = 0;
+    private static final int ITEM_DETAILS = 1;
+    private static final int PURCHASES = 2;
+    private static final int INVENTORY = 3;
+    private static final int CONSUME_PURCHASE = 4;
+    private static final int CONSUME_PURCHASES = 5;
+    private static final int ACTIVITY_STARTED = 6;
+    private static final int PURCHASE = 7;
+
+    private static final int MAX_POOL_SIZE = 10;
+    private static final Object sPoolLock = new Object();
+
+    private static BillingEvent sPool;
+    private static int sPoolSize;
+
+    private BillingEvent mNext;
+    private int mType;
+
+    // Only the fields of the type of the event are set
+    private ErrorHandler mErrorHandler;
+    private ItemDetailsHandler mItemDetailsHandler;
+    private PurchasesHandler mPurchasesHandler;
+    private InventoryHandler mInventoryHandler;
+    private ConsumeItemHandler mConsumeItemHandler;
+    private ConsumeItemsHandler mConsumeItemsHandler;
+    private StartActivityHandler mStartActivityHandler;
+    private PurchaseHandler mPurchaseHandler;
+
+    private ItemDetails mItemDetails;
+    private Purchases mPurchases;
+    private List<ConsumeResponse> mConsumeResponses;
+    private Purchase mPurchase;
+    private BillingException mException;
+
+    private BillingEvent() {
+    }
+
+    static BillingEvent obtainError(ErrorHandler handler, BillingException exception) {
+        BillingEvent event = obtain(ERROR);
+        event.mErrorHandler = handler;
+        event.mException = exception;
+        return event;
+    }
+
+    static BillingEvent obtainItemDetails(ItemDetailsHandler handler, ItemDetails itemDetails) {
+        BillingEvent event = obtain(ITEM_DETAILS);
+        event.mItemDetailsHandler = handler;
+        event.mItemDetails = itemDetails;
+        return event;
+    }
+
+    static BillingEvent obtainPurchases(PurchasesHandler handler, Purchases purchases) {
+        BillingEvent event = obtain(PURCHASES);
+        event.mPurchasesHandler = handler;
+        event.mPurchases = purchases;
+        return event;
+    }
+
+    static BillingEvent obtainInventory(InventoryHandler handler, Purchases purchases) {
+        BillingEvent event = obtain(INVENTORY);
+        event.mInventoryHandler = handler;
+        event.mPurchases = purchases;
+        return event;
+    }
+
+    static BillingEvent obtainConsumePurchase(ConsumeItemHandler handler) {
+        BillingEvent event = obtain(CONSUME_PURCHASE);
+        event.mConsumeItemHandler = handler;
+        return event;
+    }
+
+    static BillingEvent obtainConsumePurchases(ConsumeItemsHandler handler, List<ConsumeResponse> responses) {
+        BillingEvent event = obtain(CONSUME_PURCHASES);
+        event.mConsumeItemsHandler = handler;
+        event.mConsumeResponses = responses;
+        return event;
+    }
+
+    static BillingEvent obtainActivityStarted(StartActivityHandler handler) {
+        BillingEvent event = obtain(ACTIVITY_STARTED);
+        event.mStartActivityHandler = handler;
+        return event;
+    }
+
+    /**
+     * @param handler   handler to receive the response
+     * @param purchase  purchase to be delivered, or null if it failed
+     * @param exception exception to be delivered, or null if it succeeded
+     */
+    static BillingEvent obtainPurchase(PurchaseHandler handler, Purchase purchase, BillingException exception) {
+        BillingEvent event = obtain(PURCHASE);
+        event.mPurchaseHandler = handler;
+        event.mPurchase = purchase;
+        event.mException = exception;
+        return event;
+    }
+
+    private static BillingEvent obtain(int type) {
+        BillingEvent event = null;
+        synchronized (sPoolLock) {
+            if (sPool != null) {
+                event = sPool;
+                sPool = event.mNext;
+                event.mNext = null;
+                sPoolSize--;
+            }
+        }
+        if (event == null) {
+            event = new BillingEvent();
+        }
+        event.mType = type;
+        return event;
+    }
+
+    @Override
+    public void run() {
+        try {
+            dispatch();
+        } finally {
+            recycle();
+        }
+    }
+
+    private void dispatch() {
+        switch (mType) {
+            case ITEM_DETAILS:
+                mItemDetailsHandler.onSuccess(mItemDetails);
+                break;
+            case PURCHASES:
+                mPurchasesHandler.onSuccess(mPurchases);
+                break;
+            case INVENTORY:
+                mInventoryHandler.onSuccess(mPurchases);
+                break;
+            case CONSUME_PURCHASE:
+                mConsumeItemHandler.onSuccess();
+                break;
+            case CONSUME_PURCHASES:
+                mConsumeItemsHandler.onSuccess(mConsumeResponses);
+                break;
+            case ACTIVITY_STARTED:
+                mStartActivityHandler.onSuccess();
+                break;
+            case PURCHASE:
+                mPurchaseHandler.call(new PurchaseResponse(mPurchase, mException));
+                break;
+            default:
+                mErrorHandler.onError(mException);
+                break;
+        }
+    }
+
+    private void recycle() {
+        mType = ERROR;
+        mErrorHandler = null;
+        mItemDetailsHandler = null;
+        mPurchasesHandler = null;
+        mInventoryHandler = null;
+        mConsumeItemHandler = null;
+        mConsumeItemsHandler = null;
+        mStartActivityHandler = null;
+        mPurchaseHandler = null;
+        mItemDetails = null;
+        mPurchases = null;
+        mConsumeResponses = null;
+        mPurchase = null;
+        mException = null;
+
+        synchronized (sPoolLock) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                mNext = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+}
@@ -24,19 +24,19 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.RemoteException;
-import android.text.TextUtils;
 import android.util.SparseArray;
 
 import com.android.vending.billing.IInAppBillingService;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 
 import jp.alessandro.android.iab.handler.ConsumeItemHandler;
+import jp.alessandro.android.iab.handler.ConsumeItemsHandler;
 import jp.alessandro.android.iab.handler.ErrorHandler;
 import jp.alessandro.android.iab.handler.InventoryHandler;
 import jp.alessandro.android.iab.handler.ItemDetailsHandler;
@@ -44,7 +44,7 @@ import jp.alessandro.android.iab.handler.PurchaseHandler;
 import jp.alessandro.android.iab.handler.PurchasesHandler;
 import jp.alessandro.android.iab.handler.StartActivityHandler;
 import jp.alessandro.android.iab.logger.Logger;
-import jp.alessandro.android.iab.response.PurchaseResponse;
+import jp.alessandro.android.iab.response.ConsumeResponse;
 
 public class BillingProcessor {
 
@@ -54,11 +54,15 @@ public class BillingProcessor {
     private final SparseArray<PurchaseFlowLauncher> mPurchaseFlows;
     private final Logger mLogger;
     private final Intent mServiceIntent;
+    private final BillingSupport mBillingSupport;
 
     private PurchaseHandler mPurchaseHandler;
+    private final WorkThread mWorkThread;
+    private final PurchasesSnapshot mPurchasesSnapshot;
+
     private Handler mMainHandler;
-    private Handler mWorkHandler;
-    private boolean mIsReleased;
+    // Read without the lock by the operations running on the work thread
+    private volatile boolean mIsReleased;
 
     public BillingProcessor(BillingContext context, PurchaseHandler purchaseHandler) {
         Checker.billingProcessorArguments(context, purchaseHandler);
@@ -67,6 +71,9 @@ public class BillingProcessor {
         mPurchaseHandler = purchaseHandler;
         mPurchaseFlows = new SparseArray<>();
         mLogger = context.getLogger();
+        mBillingSupport = new BillingSupport(context);
+        mWorkThread = new WorkThread(WORK_THREAD_NAME, context.getWorkThreadIdleTimeout());
+        mPurchasesSnapshot = context.isPurchasesSnapshotEnabled() ? new PurchasesSnapshot() : null;
 
         mServiceIntent = new Intent(Constants.ACTION_BILLING_SERVICE_BIND);
         mServiceIntent.setPackage(Constants.VENDING_PACKAGE);
@@ -140,21 +147,88 @@ public class BillingProcessor {
                     try {
                         checkIfBillingIsSupported(PurchaseType.IN_APP, service);
 
-                        String token = getToken(service, itemId);
-                        int response = service.consumePurchase(
-                                mContext.getApiVersion(),
-                                mContext.getContext().getPackageName(),
-                                token
-                        );
-                        if (response != Constants.BILLING_RESPONSE_RESULT_OK) {
-                            throw new BillingException(response, Constants.ERROR_MSG_CONSUME);
-                        }
+                        ItemConsumer consumer = new ItemConsumer(mContext);
+                        consumer.consume(service, itemId);
+                        invalidatePurchasesSnapshot();
                         postConsumePurchaseSuccess(handler);
 
                     } catch (BillingException e) {
                         postOnError(e, handler);
-                    } catch (RemoteException e) {
-                        postOnError(new BillingException(Constants.ERROR_REMOTE_EXCEPTION, e.getMessage()), handler);
+                    }
+                }
+
+                @Override
+                public void onError(BillingException e) {
+                    postBindServiceError(e, handler);
+                }
+            });
+        }
+    }
+
+    /**
+     * Consumes previously purchased item to be purchased again
+     * Unlike {@link BillingProcessor#consumePurchase(String, ConsumeItemHandler)},
+     * it uses the token of the given purchase directly instead of loading the inventory to find it
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param purchase purchase to be consumed, e.g. the one received in {@link PurchaseHandler}
+     * @param handler  callback called asynchronously
+     */
+    public void consumePurchase(final Purchase purchase, final ConsumeItemHandler handler) {
+        synchronized (this) {
+            checkIfIsNotReleased();
+            Checker.consumePurchasesArguments(purchase, handler);
+
+            executeInServiceOnWorkThread(new ServiceBinder.Handler() {
+                @Override
+                public void onBind(IInAppBillingService service) {
+                    try {
+                        ItemConsumer consumer = new ItemConsumer(mContext);
+                        consumer.consume(service, purchase);
+                        invalidatePurchasesSnapshot();
+                        postConsumePurchaseSuccess(handler);
+
+                    } catch (BillingException e) {
+                        postOnError(e, handler);
+                    }
+                }
+
+                @Override
+                public void onError(BillingException e) {
+                    postBindServiceError(e, handler);
+                }
+            });
+        }
+    }
+
+    /**
+     * Consumes many previously purchased items at once
+     * The inventory is loaded only once and all the items are consumed over the same service connection
+     * The result of each item is reported in {@link ConsumeItemsHandler#onSuccess(List)}
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param itemIds consumable item ids
+     * @param handler callback called asynchronously
+     */
+    public void consumePurchases(final Collection<String> itemIds, final ConsumeItemsHandler handler) {
+        synchronized (this) {
+            checkIfIsNotReleased();
+            Checker.consumePurchasesArguments(itemIds, handler);
+
+            final List<String> ids = new ArrayList<>(itemIds);
+            executeInServiceOnWorkThread(new ServiceBinder.Handler() {
+                @Override
+                public void onBind(IInAppBillingService service) {
+                    try {
+                        checkIfBillingIsSupported(PurchaseType.IN_APP, service);
+
+                        ItemConsumer consumer = new ItemConsumer(mContext);
+                        List<ConsumeResponse> responses = consumer.consume(service, ids);
+                        invalidatePurchasesSnapshot();
+                        postConsumePurchasesSuccess(responses, handler);
+
+                    } catch (BillingException e) {
+                        postOnError(e, handler);
                     }
                 }
 
@@ -198,43 +272,51 @@ public class BillingProcessor {
     /**
      * Get item details (SKU)
      * See http://developer.android.com/google/play/billing/billing_integrate.html#QueryDetails
+     * If {@link BillingContext.Builder#setItemDiskCacheEnabled(boolean)} is enabled,
+     * the handler may be called twice: first with the stored items and then with the refreshed ones if they changed
+     * Use {@link BillingProcessor#getItemDetailsOnce(PurchaseType, ArrayList, ItemDetailsHandler)}
+     * if the result can be delivered only once
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param handler      callback called asynchronously
+     */
+    public void getItemDetails(PurchaseType purchaseType, ArrayList<String> itemIds, ItemDetailsHandler handler) {
+        getItemDetails(purchaseType, itemIds, handler, true);
+    }
+
+    /**
+     * Get item details (SKU)
+     * The handler is called only once, with the items loaded from Google Play,
+     * even if {@link BillingContext.Builder#setItemDiskCacheEnabled(boolean)} is enabled,
+     * so it can be used to complete a future or an observable
      *
      * @param purchaseType IN_APP or SUBSCRIPTION
      * @param handler      callback called asynchronously
      */
-    public void getItemDetails(final PurchaseType purchaseType,
-                               final ArrayList<String> itemIds,
-                               final ItemDetailsHandler handler) {
+    public void getItemDetailsOnce(PurchaseType purchaseType, ArrayList<String> itemIds, ItemDetailsHandler handler) {
+        getItemDetails(purchaseType, itemIds, handler, false);
+    }
+
+    private void getItemDetails(PurchaseType purchaseType,
+                                ArrayList<String> itemIds,
+                                ItemDetailsHandler handler,
+                                boolean storedFirst) {
         synchronized (this) {
             checkIfIsNotReleased();
             Checker.getItemDetailsArguments(purchaseType, itemIds, handler);
 
-            executeInServiceOnWorkThread(new ServiceBinder.Handler() {
-                @Override
-                public void onBind(IInAppBillingService service) {
-                    String type;
-                    if (purchaseType == PurchaseType.SUBSCRIPTION) {
-                        type = Constants.TYPE_SUBSCRIPTION;
-                    } else {
-                        type = Constants.TYPE_IN_APP;
-                    }
-                    try {
-                        checkIfBillingIsSupported(purchaseType, service);
-
-                        ItemGetter getter = new ItemGetter(mContext);
-                        ItemDetails details = getter.get(service, type, itemIds);
-
-                        postGetItemDetailsSuccess(details, handler);
-                    } catch (BillingException e) {
-                        postOnError(e, handler);
-                    }
-                }
-
-                @Override
-                public void onError(BillingException e) {
-                    postBindServiceError(e, handler);
-                }
-            });
+            ItemDetailsLoader loader = new ItemDetailsLoader(purchaseType, itemIds, handler);
+            // The memory cache is checked first, so neither the disk nor the service is needed
+            ItemDetails cached = new ItemGetter(mContext).getCached(loader.mItemType, itemIds);
+            if (cached != null) {
+                postGetItemDetailsSuccess(cached, handler);
+                return;
+            }
+            if (storedFirst && mContext.getItemDiskCache() != null) {
+                // Delivers the stored items before binding the service
+                post(getWorkHandler(), loader);
+            }
+            executeInServiceOnWorkThread(loader);
         }
     }
 
@@ -251,32 +333,30 @@ public class BillingProcessor {
             checkIfIsNotReleased();
             Checker.getPurchasesArguments(purchaseType, handler);
 
-            executeInServiceOnWorkThread(new ServiceBinder.Handler() {
-                @Override
-                public void onBind(IInAppBillingService service) {
-                    String type;
-                    if (purchaseType == PurchaseType.SUBSCRIPTION) {
-                        type = Constants.TYPE_SUBSCRIPTION;
-                    } else {
-                        type = Constants.TYPE_IN_APP;
-                    }
-                    try {
-                        checkIfBillingIsSupported(purchaseType, service);
-
-                        PurchaseGetter getter = new PurchaseGetter(mContext);
-                        Purchases purchases = getter.get(service, type);
+            Purchases snapshot = mPurchasesSnapshot == null ? null : mPurchasesSnapshot.get(purchaseType);
+            if (snapshot != null) {
+                postGetPurchasesSuccess(snapshot, handler);
+                return;
+            }
+            loadPurchases(purchaseType, handler);
+        }
+    }
 
-                        postGetPurchasesSuccess(purchases, handler);
-                    } catch (BillingException e) {
-                        postOnError(e, handler);
-                    }
-                }
+    /**
+     * Same as {@link BillingProcessor#getPurchases(PurchaseType, PurchasesHandler)}
+     * but it always loads the purchases from Google Play, replacing the ones kept in memory
+     * See {@link BillingContext.Builder#setPurchasesSnapshotEnabled(boolean)}
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param handler      callback called asynchronously
+     */
+    public void refreshPurchases(final PurchaseType purchaseType, final PurchasesHandler handler) {
+        synchronized (this) {
+            checkIfIsNotReleased();
+            Checker.getPurchasesArguments(purchaseType, handler);
 
-                @Override
-                public void onError(BillingException e) {
-                    postBindServiceError(e, handler);
-                }
-            });
+            invalidatePurchasesSnapshot();
+            loadPurchases(purchaseType, handler);
         }
     }
 
@@ -324,6 +404,40 @@ public class BillingProcessor {
         }
     }
 
+    private void loadPurchases(final PurchaseType purchaseType, final PurchasesHandler handler) {
+        final int generation = mPurchasesSnapshot == null ? 0 : mPurchasesSnapshot.getGeneration();
+
+        executeInServiceOnWorkThread(new ServiceBinder.Handler() {
+            @Override
+            public void onBind(IInAppBillingService service) {
+                String type;
+                if (purchaseType == PurchaseType.SUBSCRIPTION) {
+                    type = Constants.TYPE_SUBSCRIPTION;
+                } else {
+                    type = Constants.TYPE_IN_APP;
+                }
+                try {
+                    checkIfBillingIsSupported(purchaseType, service);
+
+                    PurchaseGetter getter = new PurchaseGetter(mContext);
+                    Purchases purchases = getter.get(service, type);
+
+                    if (mPurchasesSnapshot != null) {
+                        mPurchasesSnapshot.put(purchaseType, purchases, generation);
+                    }
+                    postGetPurchasesSuccess(purchases, handler);
+                } catch (BillingException e) {
+                    postOnError(e, handler);
+                }
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                postBindServiceError(e, handler);
+            }
+        });
+    }
+
     /**
      * Checks the purchase response from Google
      * The result will be sent through PurchaseHandler
@@ -342,7 +456,10 @@ public class BillingProcessor {
             }
             try {
                 Checker.isMainThread();
+                // The purchases may have changed even if the result is an error, e.g. item already owned
+                invalidatePurchasesSnapshot();
                 Purchase purchase = launcher.handleResult(requestCode, resultCode, data);
+                putEntitlement(launcher.getItemType(), purchase);
 
                 postPurchaseSuccess(purchase);
             } catch (BillingException e) {
@@ -368,13 +485,12 @@ public class BillingProcessor {
         synchronized (this) {
             checkIfIsNotReleased();
             mPurchaseFlows.clear();
+            invalidatePurchasesSnapshot();
 
             if (mMainHandler != null) {
                 mMainHandler.removeCallbacksAndMessages(null);
             }
-            if (mWorkHandler != null) {
-                mWorkHandler.removeCallbacksAndMessages(null);
-            }
+            mWorkThread.clear();
         }
     }
 
@@ -388,31 +504,17 @@ public class BillingProcessor {
         synchronized (this) {
             mIsReleased = true;
             mPurchaseFlows.clear();
+            invalidatePurchasesSnapshot();
 
             if (mMainHandler != null) {
                 mMainHandler.removeCallbacksAndMessages(null);
             }
-            if (mWorkHandler != null) {
-                mWorkHandler.removeCallbacksAndMessages(null);
-                mWorkHandler.getLooper().quit();
-            }
+            mWorkThread.quit();
         }
     }
 
     protected void checkIfBillingIsSupported(PurchaseType purchaseType, IInAppBillingService service) throws BillingException {
-        try {
-            if (isSupported(purchaseType, service)) {
-                return;
-            }
-        } catch (RemoteException e) {
-            throw new BillingException(Constants.ERROR_REMOTE_EXCEPTION, e.getMessage());
-        }
-        if (purchaseType == PurchaseType.SUBSCRIPTION) {
-            throw new BillingException(Constants.ERROR_SUBSCRIPTIONS_NOT_SUPPORTED,
-                    Constants.ERROR_MSG_SUBSCRIPTIONS_NOT_SUPPORTED);
-        }
-        throw new BillingException(Constants.ERROR_PURCHASES_NOT_SUPPORTED,
-                Constants.ERROR_MSG_PURCHASES_NOT_SUPPORTED);
+        mBillingSupport.check(purchaseType, service);
     }
 
     /**
@@ -422,38 +524,17 @@ public class BillingProcessor {
      * @return true if it is supported
      */
     protected boolean isSupported(PurchaseType purchaseType, IInAppBillingService service) throws RemoteException {
-        String type;
-
-        if (purchaseType == PurchaseType.SUBSCRIPTION) {
-            type = Constants.TYPE_SUBSCRIPTION;
-        } else {
-            type = Constants.TYPE_IN_APP;
-        }
-
-        int response = service.isBillingSupported(
-                mContext.getApiVersion(),
-                mContext.getContext().getPackageName(),
-                type);
-
-        if (response == Constants.BILLING_RESPONSE_RESULT_OK) {
-            mLogger.d(Logger.TAG, "Subscription is AVAILABLE.");
-            return true;
-        }
-        mLogger.w(Logger.TAG,
-                String.format(Locale.US, "Subscription is NOT AVAILABLE. Response: %d", response));
-        return false;
+        return mBillingSupport.isSupported(purchaseType, service);
     }
 
     /**
      * Handler to post all actions in the library
+     * The work thread is started on demand and quits after being idle for
+     * {@link BillingContext.Builder#setWorkThreadIdleTimeout(long)}, so the handler must not be kept
+     * It returns null once the BillingProcessor is released
      */
     protected Handler getWorkHandler() {
-        if (mWorkHandler == null) {
-            HandlerThread thread = new HandlerThread(WORK_THREAD_NAME);
-            thread.start();
-            mWorkHandler = new Handler(thread.getLooper());
-        }
-        return mWorkHandler;
+        return mWorkThread.getHandler();
     }
 
     /**
@@ -467,18 +548,14 @@ public class BillingProcessor {
     }
 
     /**
-     * Get the purchase token to be used in {@link BillingProcessor#consumePurchase(String, ConsumeItemHandler)}
+     * Handler to post the results of the operations
+     * By default the results are delivered on the main thread
+     * Override it to deliver them on another thread, e.g. {@link BillingProcessor#getWorkHandler()}
+     * If it returns null the results are dropped
+     * The purchase result sent through PurchaseHandler is always delivered on the main thread
      */
-    private String getToken(IInAppBillingService service, String itemId) throws BillingException {
-        PurchaseGetter getter = new PurchaseGetter(mContext);
-        Purchases purchases = getter.get(service, Constants.ITEM_TYPE_INAPP);
-        Purchase purchase = purchases.getByPurchaseId(itemId);
-
-        if (purchase == null || TextUtils.isEmpty(purchase.getToken())) {
-            throw new BillingException(Constants.ERROR_PURCHASE_DATA,
-                    Constants.ERROR_MSG_PURCHASE_OR_TOKEN_NULL);
-        }
-        return purchase.getToken();
+    protected Handler getEventHandler() {
+        return getMainHandler();
     }
 
     protected ServiceBinder createServiceBinder() {
@@ -522,135 +599,105 @@ public class BillingProcessor {
         });
     }
 
-    private void executeInService(final ServiceBinder.Handler serviceHandler, Handler handler) {
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                final ServiceBinder conn = createServiceBinder();
-
-                conn.getServiceAsync(new ServiceBinder.Handler() {
-                    @Override
-                    public void onBind(IInAppBillingService service) {
-                        try {
-                            serviceHandler.onBind(service);
-                        } finally {
-                            conn.unbindService();
-                        }
-                    }
+    private void executeInService(ServiceBinder.Handler serviceHandler, Handler handler, WorkThread workThread) {
+        post(handler, new ServiceCall(serviceHandler, workThread));
+    }
 
-                    @Override
-                    public void onError(BillingException e) {
-                        serviceHandler.onError(e);
-                    }
-                });
-            }
-        });
+    /**
+     * Drops the runnable if the handler is null, e.g. the work thread was quit by {@link BillingProcessor#release()}
+     */
+    private static void post(Handler handler, Runnable runnable) {
+        if (handler != null) {
+            handler.post(runnable);
+        }
     }
 
     private PurchaseFlowLauncher createPurchaseFlowLauncher(PurchaseType purchaseType, int requestCode) throws BillingException {
         PurchaseFlowLauncher launcher = mPurchaseFlows.get(requestCode);
-        String type;
 
         if (launcher != null) {
             String message = String.format(Locale.US, Constants.ERROR_MSG_PURCHASE_FLOW_ALREADY_EXISTS, requestCode);
             throw new BillingException(Constants.ERROR_PURCHASE_FLOW_ALREADY_EXISTS, message);
         }
 
-        if (purchaseType == PurchaseType.SUBSCRIPTION) {
-            type = Constants.TYPE_SUBSCRIPTION;
-        } else {
-            type = Constants.TYPE_IN_APP;
-        }
-        return new PurchaseFlowLauncher(mContext, type);
+        return new PurchaseFlowLauncher(mContext, BillingSupport.getItemType(purchaseType));
     }
 
-    private void executeInServiceOnWorkThread(final ServiceBinder.Handler serviceHandler) {
-        executeInService(serviceHandler, getWorkHandler());
+    private void executeInServiceOnWorkThread(ServiceBinder.Handler serviceHandler) {
+        executeInService(serviceHandler, getWorkHandler(), mWorkThread);
     }
 
-    private void executeInServiceOnMainThread(final ServiceBinder.Handler serviceHandler) {
-        executeInService(serviceHandler, getMainHandler());
+    private void executeInServiceOnMainThread(ServiceBinder.Handler serviceHandler) {
+        executeInService(serviceHandler, getMainHandler(), null);
     }
 
     private void postBindServiceError(BillingException exception, ErrorHandler handler) {
         postOnError(exception, handler);
     }
 
-    private void postPurchaseSuccess(final Purchase purchase) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                mPurchaseHandler.call(new PurchaseResponse(purchase, null));
-            }
-        });
+    private void postPurchaseSuccess(Purchase purchase) {
+        getMainHandler().post(BillingEvent.obtainPurchase(mPurchaseHandler, purchase, null));
     }
 
-    private void postPurchaseError(final BillingException e) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                mPurchaseHandler.call(new PurchaseResponse(null, e));
-            }
-        });
+    private void postPurchaseError(BillingException e) {
+        getMainHandler().post(BillingEvent.obtainPurchase(mPurchaseHandler, null, e));
     }
 
-    private void postGetItemDetailsSuccess(final ItemDetails itemDetails, final ItemDetailsHandler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onSuccess(itemDetails);
-            }
-        });
+    private void postGetItemDetailsSuccess(ItemDetails itemDetails, ItemDetailsHandler handler) {
+        postEventHandler(BillingEvent.obtainItemDetails(handler, itemDetails));
     }
 
-    private void postGetPurchasesSuccess(final Purchases purchases, final PurchasesHandler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onSuccess(purchases);
-            }
-        });
+    private void postGetPurchasesSuccess(Purchases purchases, PurchasesHandler handler) {
+        postEventHandler(BillingEvent.obtainPurchases(handler, purchases));
     }
 
-    private void postConsumePurchaseSuccess(final ConsumeItemHandler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onSuccess();
-            }
-        });
+    private void postConsumePurchaseSuccess(ConsumeItemHandler handler) {
+        postEventHandler(BillingEvent.obtainConsumePurchase(handler));
+    }
+
+    private void postConsumePurchasesSuccess(List<ConsumeResponse> responses, ConsumeItemsHandler handler) {
+        postEventHandler(BillingEvent.obtainConsumePurchases(handler, responses));
     }
 
     @Deprecated
-    private void postGetInventorySuccess(final Purchases purchases, final InventoryHandler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onSuccess(purchases);
-            }
-        });
+    private void postGetInventorySuccess(Purchases purchases, InventoryHandler handler) {
+        postEventHandler(BillingEvent.obtainInventory(handler, purchases));
     }
 
-    private void postActivityStartedSuccess(final StartActivityHandler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onSuccess();
-            }
-        });
+    private void postActivityStartedSuccess(StartActivityHandler handler) {
+        postEventHandler(BillingEvent.obtainActivityStarted(handler));
+    }
+
+    private void postOnError(BillingException e, ErrorHandler handler) {
+        postEventHandler(BillingEvent.obtainError(handler, e));
     }
 
-    private void postOnError(final BillingException e, final ErrorHandler handler) {
-        postEventHandler(new Runnable() {
+    private void postEventHandler(BillingEvent event) {
+        // The operations that were running when it was released do not deliver their results
+        if (!mIsReleased) {
+            post(getEventHandler(), event);
+        }
+    }
+
+    private void putEntitlement(final String itemType, final Purchase purchase) {
+        final EntitlementStore store = mContext.getEntitlementStore();
+        if (store == null) {
+            return;
+        }
+        // Loading the store maps the file, so it must not be done on the main thread
+        post(getWorkHandler(), new Runnable() {
             @Override
             public void run() {
-                handler.onError(e);
+                store.put(itemType, purchase);
+                store.save();
             }
         });
     }
 
-    private void postEventHandler(Runnable r) {
-        getMainHandler().post(r);
+    private void invalidatePurchasesSnapshot() {
+        if (mPurchasesSnapshot != null) {
+            mPurchasesSnapshot.invalidate();
+        }
     }
 
     private void checkIfIsNotReleased() {
@@ -658,4 +705,123 @@ public class BillingProcessor {
             throw new IllegalStateException(Constants.ERROR_MSG_LIBRARY_ALREADY_RELEASED);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Binds the service, executes the operation and unbinds it
+     * The same object is used for every step, so the steps do not need their own callbacks
+     */
+    private class ServiceCall implements Runnable, ServiceBinder.Handler {
+
+        private final ServiceBinder.Handler mServiceHandler;
+        private final WorkThread mOperationThread;
+
+        private ServiceBinder mConn;
+
+        /**
+         * @param serviceHandler operation to be executed with the service
+         * @param workThread     thread to be kept alive until the operation finishes, or null
+         */
+        ServiceCall(ServiceBinder.Handler serviceHandler, WorkThread workThread) {
+            mServiceHandler = serviceHandler;
+            mOperationThread = workThread;
+        }
+
+        @Override
+        public void run() {
+            // The queued operations are covered by the idle timer restarted in getWorkHandler
+            // Once started, the operation keeps the work thread alive until the service returns
+            if (mOperationThread != null) {
+                mOperationThread.beginOperation();
+            }
+            mConn = createServiceBinder();
+            mConn.getServiceAsync(this);
+        }
+
+        @Override
+        public void onBind(IInAppBillingService service) {
+            try {
+                mServiceHandler.onBind(service);
+            } finally {
+                mConn.unbindService();
+                endOperation();
+            }
+        }
+
+        @Override
+        public void onError(BillingException e) {
+            // The purchases may have changed while the service was not reachable
+            invalidatePurchasesSnapshot();
+            try {
+                mServiceHandler.onError(e);
+            } finally {
+                endOperation();
+            }
+        }
+
+        private void endOperation() {
+            if (mOperationThread != null) {
+                mOperationThread.endOperation();
+            }
+        }
+    }
+
+    /**
+     * Loads the item details from Google Play
+     * If the disk cache is enabled and it is run before binding, the stored items are delivered first
+     * and the loaded ones are delivered only if they are different
+     */
+    private class ItemDetailsLoader implements Runnable, ServiceBinder.Handler {
+
+        private final PurchaseType mPurchaseType;
+        private final String mItemType;
+        private final ArrayList<String> mItemIds;
+        private final ItemDetailsHandler mHandler;
+
+        private ItemDetails mStored;
+
+        ItemDetailsLoader(PurchaseType purchaseType, ArrayList<String> itemIds, ItemDetailsHandler handler) {
+            mPurchaseType = purchaseType;
+            mItemType = BillingSupport.getItemType(purchaseType);
+            mItemIds = itemIds;
+            mHandler = handler;
+        }
+
+        @Override
+        public void run() {
+            mStored = mContext.getItemDiskCache().read(mItemType, mItemIds);
+            if (mStored != null) {
+                postGetItemDetailsSuccess(mStored, mHandler);
+            }
+        }
+
+        @Override
+        public void onBind(IInAppBillingService service) {
+            try {
+                checkIfBillingIsSupported(mPurchaseType, service);
+
+                ItemGetter getter = new ItemGetter(mContext);
+                ItemDetails details = getter.get(service, mItemType, mItemIds);
+
+                ItemDiskCache diskCache = mContext.getItemDiskCache();
+                if (diskCache != null) {
+                    diskCache.write(mItemType, details);
+                }
+                if (mStored == null || !ItemDiskCache.isSame(mStored, details)) {
+                    postGetItemDetailsSuccess(details, mHandler);
+                }
+            } catch (BillingException e) {
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onError(BillingException e) {
+            if (mStored == null) {
+                postOnError(e, mHandler);
+            } else {
+                // The stored items were already delivered
+                mLogger.w(Logger.TAG, "Failed to refresh the item details: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.content.Intent;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jp.alessandro.android.iab.response.ConsumeResponse;
+
+/**
+ * Blocking version of {@link BillingProcessor} for callers that are already on a background thread
+ * <p>
+ * The operations are executed directly on the calling thread and return their results,
+ * without posting them to the work thread and back to the main thread.
+ * None of the methods can be called from the main thread, since the service connection is delivered there.
+ * Purchases must still be started with {@link BillingProcessor}.
+ */
+public class BillingProcessorSync {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private final BillingContext mContext;
+    private final BillingSupport mBillingSupport;
+    private final Intent mServiceIntent;
+    private final long mTimeoutMillis;
+
+    public BillingProcessorSync(BillingContext context) {
+        this(context, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param context context that contains all information to execute the library
+     * @param timeout maximum time to wait for the connection with the in-app billing service
+     * @param unit    unit of the timeout
+     */
+    public BillingProcessorSync(BillingContext context, long timeout, TimeUnit unit) {
+        if (context == null || unit == null) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        mContext = context;
+        mBillingSupport = new BillingSupport(context);
+        mTimeoutMillis = unit.toMillis(timeout);
+
+        mServiceIntent = new Intent(Constants.ACTION_BILLING_SERVICE_BIND);
+        mServiceIntent.setPackage(Constants.VENDING_PACKAGE);
+    }
+
+    /**
+     * Consumes previously purchased item to be purchased again
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param itemId consumable item id
+     * @throws BillingException if the item could not be consumed
+     */
+    public void consumePurchase(String itemId) throws BillingException {
+        Checker.isNotMainThread();
+        Checker.consumePurchasesArguments(itemId);
+
+        ServiceBinder conn = createServiceBinder();
+        IInAppBillingService service = conn.getService(mTimeoutMillis);
+        try {
+            mBillingSupport.check(PurchaseType.IN_APP, service);
+
+            ItemConsumer consumer = new ItemConsumer(mContext);
+            consumer.consume(service, itemId);
+        } finally {
+            conn.unbindService();
+        }
+    }
+
+    /**
+     * Consumes previously purchased item to be purchased again
+     * It uses the token of the given purchase directly instead of loading the inventory to find it
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param purchase purchase to be consumed
+     * @throws BillingException if the item could not be consumed
+     */
+    public void consumePurchase(Purchase purchase) throws BillingException {
+        Checker.isNotMainThread();
+        Checker.consumePurchasesArguments(purchase);
+
+        ServiceBinder conn = createServiceBinder();
+        IInAppBillingService service = conn.getService(mTimeoutMillis);
+        try {
+            ItemConsumer consumer = new ItemConsumer(mContext);
+            consumer.consume(service, purchase);
+        } finally {
+            conn.unbindService();
+        }
+    }
+
+    /**
+     * Consumes many previously purchased items at once
+     * The inventory is loaded only once and all the items are consumed over the same service connection
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#Consume
+     *
+     * @param itemIds consumable item ids
+     * @return the result of each item, in the same order they were given
+     * @throws BillingException if the service could not be bound or the inventory could not be loaded
+     */
+    public List<ConsumeResponse> consumePurchases(Collection<String> itemIds) throws BillingException {
+        Checker.isNotMainThread();
+        Checker.consumePurchasesArguments(itemIds);
+
+        ServiceBinder conn = createServiceBinder();
+        IInAppBillingService service = conn.getService(mTimeoutMillis);
+        try {
+            mBillingSupport.check(PurchaseType.IN_APP, service);
+
+            ItemConsumer consumer = new ItemConsumer(mContext);
+            return consumer.consume(service, itemIds);
+        } finally {
+            conn.unbindService();
+        }
+    }
+
+    /**
+     * Get item details (SKU)
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#QueryDetails
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param itemIds      list of SKU ids to be loaded
+     * @return the item details
+     * @throws BillingException if the item details could not be loaded
+     */
+    public ItemDetails getItemDetails(PurchaseType purchaseType, ArrayList<String> itemIds) throws BillingException {
+        Checker.isNotMainThread();
+        Checker.getItemDetailsArguments(purchaseType, itemIds);
+
+        ServiceBinder conn = createServiceBinder();
+        IInAppBillingService service = conn.getService(mTimeoutMillis);
+        try {
+            mBillingSupport.check(purchaseType, service);
+
+            ItemGetter getter = new ItemGetter(mContext);
+            return getter.get(service, BillingSupport.getItemType(purchaseType), itemIds);
+        } finally {
+            conn.unbindService();
+        }
+    }
+
+    /**
+     * Get the information about inventory of purchases made by a user from your app
+     * This method will get all the purchases even if there are more than 500
+     * See http://developer.android.com/google/play/billing/billing_integrate.html#QueryPurchases
+     *
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @return the purchases
+     * @throws BillingException if the purchases could not be loaded
+     */
+    public Purchases getPurchases(PurchaseType purchaseType) throws BillingException {
+        Checker.isNotMainThread();
+        Checker.getPurchasesArguments(purchaseType);
+
+        ServiceBinder conn = createServiceBinder();
+        IInAppBillingService service = conn.getService(mTimeoutMillis);
+        try {
+            mBillingSupport.check(purchaseType, service);
+
+            PurchaseGetter getter = new PurchaseGetter(mContext);
+            return getter.get(service, BillingSupport.getItemType(purchaseType));
+        } finally {
+            conn.unbindService();
+        }
+    }
+
+    protected ServiceBinder createServiceBinder() {
+        return new ServiceBinder(mContext, mServiceIntent);
+    }
+}
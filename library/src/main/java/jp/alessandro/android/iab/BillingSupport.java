@@ -0,0 +1,94 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.RemoteException;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import java.util.Locale;
+
+import jp.alessandro.android.iab.logger.Logger;
+
+/**
+ * Checks if the in-app billing is supported for a purchase type
+ * It is shared by {@link BillingProcessor} and {@link BillingProcessorSync}
+ */
+class BillingSupport {
+
+    private final BillingContext mContext;
+    private final Logger mLogger;
+
+    BillingSupport(BillingContext context) {
+        mContext = context;
+        mLogger = context.getLogger();
+    }
+
+    /**
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @return "inapp" or "subs"
+     */
+    static String getItemType(PurchaseType purchaseType) {
+        if (purchaseType == PurchaseType.SUBSCRIPTION) {
+            return Constants.TYPE_SUBSCRIPTION;
+        }
+        return Constants.TYPE_IN_APP;
+    }
+
+    /**
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param service      in-app billing service
+     * @throws BillingException if it is not supported or the service could not be called
+     */
+    void check(PurchaseType purchaseType, IInAppBillingService service) throws BillingException {
+        try {
+            if (isSupported(purchaseType, service)) {
+                return;
+            }
+        } catch (RemoteException e) {
+            throw new BillingException(Constants.ERROR_REMOTE_EXCEPTION, e.getMessage());
+        }
+        if (purchaseType == PurchaseType.SUBSCRIPTION) {
+            throw new BillingException(Constants.ERROR_SUBSCRIPTIONS_NOT_SUPPORTED,
+                    Constants.ERROR_MSG_SUBSCRIPTIONS_NOT_SUPPORTED);
+        }
+        throw new BillingException(Constants.ERROR_PURCHASES_NOT_SUPPORTED,
+                Constants.ERROR_MSG_PURCHASES_NOT_SUPPORTED);
+    }
+
+    /**
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param service      in-app billing service
+     * @return true if it is supported
+     */
+    boolean isSupported(PurchaseType purchaseType, IInAppBillingService service) throws RemoteException {
+        int response = service.isBillingSupported(
+                mContext.getApiVersion(),
+                mContext.getContext().getPackageName(),
+                getItemType(purchaseType));
+
+        if (response == Constants.BILLING_RESPONSE_RESULT_OK) {
+            mLogger.d(Logger.TAG, "Subscription is AVAILABLE.");
+            return true;
+        }
+        mLogger.w(Logger.TAG,
+                String.format(Locale.US, "Subscription is NOT AVAILABLE. Response: %d", response));
+        return false;
+    }
+}
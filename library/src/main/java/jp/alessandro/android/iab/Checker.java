@@ -23,8 +23,10 @@ import android.os.Looper;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 import jp.alessandro.android.iab.handler.ConsumeItemHandler;
+import jp.alessandro.android.iab.handler.ConsumeItemsHandler;
 import jp.alessandro.android.iab.handler.InventoryHandler;
 import jp.alessandro.android.iab.handler.ItemDetailsHandler;
 import jp.alessandro.android.iab.handler.PurchaseHandler;
@@ -62,6 +64,20 @@ class Checker {
         }
     }
 
+    public static void consumePurchasesArguments(Purchase purchase, ConsumeItemHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        consumePurchasesArguments(purchase);
+    }
+
+    public static void consumePurchasesArguments(Collection<String> itemIds, ConsumeItemsHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        consumePurchasesArguments(itemIds);
+    }
+
     public static void getItemDetailsArguments(PurchaseType purchaseType,
                                                ArrayList<String> itemIds,
                                                ItemDetailsHandler handler) {
@@ -71,6 +87,39 @@ class Checker {
         }
     }
 
+    public static void consumePurchasesArguments(String itemId) {
+        if (TextUtils.isEmpty(itemId)) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+    }
+
+    public static void consumePurchasesArguments(Purchase purchase) {
+        if (purchase == null || TextUtils.isEmpty(purchase.getToken())) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+    }
+
+    public static void consumePurchasesArguments(Collection<String> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        for (String itemId : itemIds) {
+            consumePurchasesArguments(itemId);
+        }
+    }
+
+    public static void getItemDetailsArguments(PurchaseType purchaseType, ArrayList<String> itemIds) {
+        if (purchaseType == null || itemIds == null || itemIds.isEmpty()) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+    }
+
+    public static void getPurchasesArguments(PurchaseType purchaseType) {
+        if (purchaseType == null) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+    }
+
     public static void getPurchasesArguments(PurchaseType purchaseType, PurchasesHandler handler) {
 
         if (purchaseType == null || handler == null) {
@@ -91,4 +140,11 @@ class Checker {
         }
         throw new IllegalStateException(Constants.ERROR_MSG_METHOD_MUST_BE_CALLED_ON_UI_THREAD);
     }
+
+    public static void isNotMainThread() {
+        if (Looper.getMainLooper() != Looper.myLooper()) {
+            return;
+        }
+        throw new IllegalStateException(Constants.ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD);
+    }
 }
\ No newline at end of file
@@ -61,6 +61,9 @@ public class Constants {
     static final String TYPE_IN_APP = "inapp";
     static final String TYPE_SUBSCRIPTION = "subs";
 
+    // State of a purchase that was not canceled or refunded
+    static final int PURCHASE_STATE_PURCHASED = 0;
+
 
     // ******************** BILLING RESPONSES KEYS ******************** //
     public static final String RESPONSE_CODE = "RESPONSE_CODE";
@@ -87,6 +90,8 @@ public class Constants {
     public static final int ERROR_VERIFICATION_FAILED = -110;
     public static final int ERROR_UNEXPECTED_TYPE = -111;
     public static final int ERROR_BIND_SERVICE_FAILED_EXCEPTION = -112;
+    public static final int ERROR_BIND_SERVICE_TIMEOUT = -113;
+    public static final int ERROR_INTERRUPTED = -114;
 
 
     // ******************** BILLING ERROR MESSAGES ******************** //
@@ -102,6 +107,7 @@ public class Constants {
     public static final String ERROR_MSG_BIND_SERVICE_FAILED_ILLEGAL_ARGUMENT = "IllegalArgumentException while trying to bind service. Please check the log for more info.";
     @SuppressWarnings("checkstyle:linelength")
     public static final String ERROR_MSG_BIND_SERVICE_FAILED_SERVICE_NULL = "onServiceConnected was called but InAppBillingService is null.";
+    public static final String ERROR_MSG_BIND_SERVICE_TIMEOUT = "Timed out while waiting for In-App Billing service connection.";
 
     public static final String ERROR_MSG_CONSUME = "Error while trying  to consume item.";
     public static final String ERROR_MSG_GET_PURCHASES = "Error while trying to get purchases.";
@@ -114,9 +120,12 @@ public class Constants {
     public static final String ERROR_MSG_GET_PURCHASE_VERIFICATION_FAILED = "***FAILED*** Failed to verify if the purchase is valid or not. Please check the log for more info.";
     public static final String ERROR_MSG_GET_SKU_DETAILS = "Error while trying to get sku details.";
     public static final String ERROR_MSG_GET_SKU_DETAILS_RESPONSE_LIST_NULL = "Response item details list is null.";
+    public static final String ERROR_MSG_INVALID_PUBLIC_KEY = "The public key is not a valid Base64-encoded RSA key.";
+    public static final String ERROR_MSG_INTERRUPTED = "The thread was interrupted while waiting for In-App Billing service.";
     public static final String ERROR_MSG_LIBRARY_ALREADY_RELEASED = "The library was released. Please generate a new instance of BillingProcessor.";
     public static final String ERROR_MSG_LOST_CONTEXT = "Context is null.";
     public static final String ERROR_MSG_METHOD_MUST_BE_CALLED_ON_UI_THREAD = "Must be called from UI Thread.";
+    public static final String ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD = "Must not be called from UI Thread.";
     public static final String ERROR_MSG_NULL_PURCHASE_DATA = "IAB returned null purchaseData or signature.";
     public static final String ERROR_MSG_PENDING_INTENT = "Pending intent is null. Probably a BUG.";
     public static final String ERROR_MSG_PURCHASE_FLOW_ALREADY_EXISTS = "Purchase flow already exists. RequestCode: %d.";
@@ -130,6 +139,8 @@ public class Constants {
     public static final String ERROR_MSG_SUBSCRIPTIONS_NOT_SUPPORTED = "Subscriptions are not supported on this device.";
     public static final String ERROR_MSG_UNABLE_TO_BUY = "Unable to buy the item.";
     public static final String ERROR_MSG_VERIFICATION_FAILED = "Signature verification has failed.";
+    public static final String ERROR_MSG_VERIFICATION_INTERRUPTED = "The thread was interrupted while verifying the purchases.";
+    public static final String ERROR_MSG_UNKNOWN_PARCEL_FORMAT = "Unknown parcel format: %d.";
     public static final String ERROR_MSG_UNEXPECTED_BUNDLE_RESPONSE = "***BUG*** Unexpected type for bundle response code.";
     public static final String ERROR_MSG_UNEXPECTED_BUNDLE_RESPONSE_NULL = "***BUG*** Bundle response is null.";
     public static final String ERROR_MSG_UPDATE_ARGUMENT_MISSING = "Argument oldItemList cannot be null or empty.";
@@ -0,0 +1,410 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import jp.alessandro.android.iab.logger.Logger;
+
+/**
+ * Keeps the verified purchases in the app-private storage,
+ * so the ownership of an item can be checked at any time without binding the service
+ * <p>
+ * It is updated with the purchases loaded by getPurchases, the successful purchases and the consumed items.
+ * The file is memory-mapped when it is first needed and the signature of each purchase is verified
+ * the first time it is requested, so a modified file cannot grant an item.
+ * <p>
+ * There is only one store per file in the process, it is shared by all the billing contexts.
+ */
+public class EntitlementStore {
+
+    static final String FILE_NAME = "entitlements";
+
+    private static final int VERSION = 1;
+    private static final String CHARSET = "UTF-8";
+
+    private static final Map<String, EntitlementStore> sInstances = new HashMap<>();
+
+    private final File mFile;
+    private final PublicKey mPublicKey;
+    private final Logger mLogger;
+    private final Security mSecurity;
+
+    private Map<String, Entry> mEntries;
+    private ByteBuffer mBuffer;
+
+    EntitlementStore(Context context, PublicKey publicKey, Logger logger) {
+        mFile = new File(new File(context.getFilesDir(), ItemDiskCache.DIRECTORY_NAME), FILE_NAME);
+        mPublicKey = publicKey;
+        mLogger = logger;
+        mSecurity = new Security(BuildConfig.DEBUG);
+    }
+
+    /**
+     * Returns the store of the given context, all the billing contexts share the same instance
+     * so they do not overwrite each other's file
+     */
+    static EntitlementStore getInstance(Context context, PublicKey publicKey, Logger logger) {
+        EntitlementStore store = new EntitlementStore(context, publicKey, logger);
+        synchronized (sInstances) {
+            String path = store.mFile.getAbsolutePath();
+            EntitlementStore instance = sInstances.get(path);
+            if (instance == null) {
+                instance = store;
+                sInstances.put(path, instance);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * It blocks while the file is read and the signature is verified,
+     * so it MUST NOT be called from the main thread
+     *
+     * @param itemId item id (SKU)
+     * @return true if there is a valid in-app or subscription purchase of the item that was not canceled or refunded
+     */
+    public boolean isOwned(String itemId) {
+        return isOwned(Constants.TYPE_IN_APP, itemId) || isOwned(Constants.TYPE_SUBSCRIPTION, itemId);
+    }
+
+    /**
+     * It MUST NOT be called from the main thread
+     *
+     * @param itemType the item type, "inapp" or "subs"
+     * @param itemId   item id (SKU)
+     * @return true if there is a valid purchase of the item that was not canceled or refunded
+     */
+    public boolean isOwned(String itemType, String itemId) {
+        Purchase purchase = getPurchase(itemType, itemId);
+        return purchase != null && purchase.getPurchaseState() == Constants.PURCHASE_STATE_PURCHASED;
+    }
+
+    /**
+     * It MUST NOT be called from the main thread
+     *
+     * @param itemId item id (SKU)
+     * @return the stored in-app purchase of the item, otherwise its subscription purchase,
+     * or null if there is none or its signature is not valid
+     */
+    public Purchase getPurchase(String itemId) {
+        Purchase purchase = getPurchase(Constants.TYPE_IN_APP, itemId);
+        return purchase == null ? getPurchase(Constants.TYPE_SUBSCRIPTION, itemId) : purchase;
+    }
+
+    /**
+     * It MUST NOT be called from the main thread
+     *
+     * @param itemType the item type, "inapp" or "subs"
+     * @param itemId   item id (SKU)
+     * @return the stored purchase of the item or null if there is none or its signature is not valid
+     * @throws IllegalStateException if it is called from the main thread
+     */
+    public synchronized Purchase getPurchase(String itemType, String itemId) {
+        Checker.isNotMainThread();
+        String key = createKey(itemType, itemId);
+        Entry entry = getEntries().get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.mPurchase == null) {
+            entry.mPurchase = readVerifiedPurchase(entry);
+            if (entry.mPurchase == null) {
+                getEntries().remove(key);
+                return null;
+            }
+        }
+        return entry.mPurchase;
+    }
+
+    /**
+     * Removes all the stored purchases
+     */
+    public synchronized void clear() {
+        mEntries = new HashMap<>();
+        mBuffer = null;
+        if (mFile.exists() && !mFile.delete()) {
+            mLogger.w(Logger.TAG, "Failed to delete " + mFile.getName());
+        }
+    }
+
+    /**
+     * Adds a verified purchase, it is written to the file by {@link EntitlementStore#save()}
+     */
+    synchronized void put(String itemType, Purchase purchase) {
+        getEntries().put(createKey(itemType, purchase.getSku()), new Entry(itemType, purchase));
+    }
+
+    /**
+     * @return true if there was a stored purchase of the item
+     */
+    synchronized boolean remove(String itemType, String itemId) {
+        return getEntries().remove(createKey(itemType, itemId)) != null;
+    }
+
+    /**
+     * Replaces the stored purchases of the given type with the current inventory
+     *
+     * @return true if the stored purchases changed, so they need to be saved
+     */
+    synchronized boolean reconcile(String itemType, Purchases purchases) {
+        Map<String, Purchase> current = new HashMap<>();
+        for (Purchase purchase : purchases.getAll()) {
+            current.put(createKey(itemType, purchase.getSku()), purchase);
+        }
+        boolean changed = false;
+        Iterator<Map.Entry<String, Entry>> iterator = getEntries().entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getValue().mItemType.equals(itemType) && !current.containsKey(entry.getKey())) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        for (Map.Entry<String, Purchase> entry : current.entrySet()) {
+            Entry stored = getEntries().get(entry.getKey());
+            if (stored == null || !isSame(stored, entry.getValue())) {
+                getEntries().put(entry.getKey(), new Entry(itemType, entry.getValue()));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the stored purchases to the file
+     * It MUST NOT be called from the main thread
+     */
+    synchronized void save() {
+        try {
+            writeFile(encode());
+        } catch (IOException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Entry> getEntries() {
+        if (mEntries == null) {
+            mEntries = new HashMap<>();
+            load();
+        }
+        return mEntries;
+    }
+
+    /**
+     * Maps the file and indexes the entries by type and item id
+     * Only the type and the item id are decoded, the purchases are decoded when they are requested
+     */
+    private void load() {
+        try {
+            mBuffer = mapFile();
+            if (mBuffer.getInt() != VERSION) {
+                throw new IOException("Unknown version of " + mFile.getName());
+            }
+            int count = mBuffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String itemType = readString(mBuffer);
+                String itemId = readString(mBuffer);
+                int offset = mBuffer.position();
+                skipString(mBuffer);
+                skipString(mBuffer);
+                mEntries.put(createKey(itemType, itemId), new Entry(itemType, itemId, offset));
+            }
+        } catch (FileNotFoundException e) {
+            mBuffer = null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            mLogger.e(Logger.TAG, "Failed to read the entitlements: " + e.getMessage());
+            mEntries.clear();
+            mBuffer = null;
+        }
+    }
+
+    private ByteBuffer mapFile() throws IOException {
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+
+    private boolean isSame(Entry entry, Purchase purchase) {
+        String[] data = readPurchaseData(entry);
+        return data != null
+                && TextUtils.equals(data[0], purchase.getOriginalJson())
+                && TextUtils.equals(data[1], purchase.getSignature());
+    }
+
+    private Purchase readVerifiedPurchase(Entry entry) {
+        String[] data = readPurchaseData(entry);
+        if (data == null || !mSecurity.verifyPurchase(mLogger, mPublicKey, data[0], data[1])) {
+            return null;
+        }
+        try {
+            return Purchase.parseJson(data[0], data[1]);
+        } catch (JSONException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the original json and the signature of the entry
+     */
+    private String[] readPurchaseData(Entry entry) {
+        if (entry.mPurchase != null) {
+            return new String[]{entry.mPurchase.getOriginalJson(), entry.mPurchase.getSignature()};
+        }
+        try {
+            ByteBuffer buffer = mBuffer.duplicate();
+            buffer.position(entry.mOffset);
+            return new String[]{readString(buffer), readString(buffer)};
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<Entry, String[]> data = new HashMap<>();
+
+        for (Entry entry : getEntries().values()) {
+            String[] purchaseData = readPurchaseData(entry);
+            if (purchaseData != null) {
+                data.put(entry, purchaseData);
+            }
+        }
+        out.writeInt(VERSION);
+        out.writeInt(data.size());
+        for (Map.Entry<Entry, String[]> entry : data.entrySet()) {
+            writeString(out, entry.getKey().mItemType);
+            writeString(out, entry.getKey().mItemId);
+            writeString(out, entry.getValue()[0]);
+            writeString(out, entry.getValue()[1]);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a temporary file and renames it, so a crash never leaves a broken file
+     * The mapped buffer keeps pointing to the previous file, so it is still valid
+     * The file is locked while it is written, so other processes of the app do not write it at the same time
+     */
+    private void writeFile(byte[] content) throws IOException {
+        File directory = mFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory.getName());
+        }
+        RandomAccessFile lockFile = new RandomAccessFile(new File(directory, FILE_NAME + ".lock"), "rw");
+        try {
+            FileLock lock = lockFile.getChannel().lock();
+            try {
+                replaceFile(directory, content);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    private void replaceFile(File directory, byte[] content) throws IOException {
+        File tmp = new File(directory, FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(mFile)) {
+            throw new IOException("Failed to rename " + tmp.getName());
+        }
+    }
+
+    /**
+     * The in-app and subscription purchases of the same item id are kept apart
+     */
+    private static String createKey(String itemType, String itemId) {
+        return itemType + '/' + itemId;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    private static class Entry {
+
+        private final String mItemType;
+        private final String mItemId;
+        private final int mOffset;
+
+        // Null until it is requested and verified
+        private Purchase mPurchase;
+
+        Entry(String itemType, String itemId, int offset) {
+            mItemType = itemType;
+            mItemId = itemId;
+            mOffset = offset;
+        }
+
+        Entry(String itemType, Purchase purchase) {
+            mItemType = itemType;
+            mItemId = purchase.getSku();
+            mOffset = -1;
+            mPurchase = purchase;
+        }
+    }
+}
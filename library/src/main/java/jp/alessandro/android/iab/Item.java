@@ -18,17 +18,54 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.BadParcelableException;
 import android.os.Parcel;
 import android.os.Parcelable;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Locale;
+
 /**
  * Represents an in-app product's listing details.
  */
 public class Item implements Parcelable {
 
+    // Index of each field in JSON_FIELDS, used to get its value from JsonFieldReader
+    private static final int FIELD_SKU = 0;
+    private static final int FIELD_TYPE = 1;
+    private static final int FIELD_TITLE = 2;
+    private static final int FIELD_DESCRIPTION = 3;
+    private static final int FIELD_CURRENCY = 4;
+    private static final int FIELD_PRICE = 5;
+    private static final int FIELD_PRICE_MICROS = 6;
+    private static final int FIELD_SUBSCRIPTION_PERIOD = 7;
+    private static final int FIELD_FREE_TRIAL_PERIOD = 8;
+    private static final int FIELD_INTRODUCTORY_PRICE_PERIOD = 9;
+    private static final int FIELD_INTRODUCTORY_PRICE_AMOUNT_MICROS = 10;
+    private static final int FIELD_INTRODUCTORY_PRICE_CYCLES = 11;
+
+    private static final String[] JSON_FIELDS = {
+            "productId", "type", "title", "description", "price_currency_code", "price", "price_amount_micros",
+            "subscriptionPeriod", "freeTrialPeriod", "introductoryPricePeriod", "introductoryPriceAmountMicros",
+            "introductoryPriceCycles"
+    };
+    private static final int[] JSON_FIELD_TYPES = {
+            JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_POOLED_STRING, JsonFieldReader.TYPE_STRING,
+            JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_POOLED_STRING, JsonFieldReader.TYPE_POOLED_STRING,
+            JsonFieldReader.TYPE_LONG, JsonFieldReader.TYPE_POOLED_STRING, JsonFieldReader.TYPE_POOLED_STRING,
+            JsonFieldReader.TYPE_POOLED_STRING, JsonFieldReader.TYPE_LONG, JsonFieldReader.TYPE_LONG
+    };
+
+    // Parcel formats, written as the first byte of the parcel
+    // The original json and the fields are written one by one
+    private static final byte PARCEL_FORMAT_FIELDS = 0;
+    // Only the original json is written, the fields are read from the json when they are got
+    private static final byte PARCEL_FORMAT_JSON = 1;
+    // As PARCEL_FORMAT_JSON, but the item is kept in compact mode
+    private static final byte PARCEL_FORMAT_COMPACT_JSON = 2;
+
     private final String mOriginalJson;
     private final String mSku;
     private final String mType;
@@ -43,6 +80,10 @@ public class Item implements Parcelable {
     private final long mIntroductoryPriceAmountMicros;
     private final String mIntroductoryPricePeriod;
     private final int mIntroductoryPriceCycles;
+    // Not null if the fields are decoded from the original json when they are got
+    private final JsonFieldReader mFields;
+    // True if the fields were read from the original json by JsonFieldReader, so they can be read from it again
+    private final boolean mReadFromJson;
 
     public Item(String originalJson,
                 String sku,
@@ -58,6 +99,15 @@ public class Item implements Parcelable {
                 long introductoryPriceAmountMicros,
                 String introductoryPricePeriod,
                 int introductoryPriceCycles) {
+        this(originalJson, sku, type, title, description, currency, price, priceMicros, subscriptionPeriod,
+                freeTrialPeriod, introductoryPrice, introductoryPriceAmountMicros, introductoryPricePeriod,
+                introductoryPriceCycles, false);
+    }
+
+    private Item(String originalJson, String sku, String type, String title, String description, String currency,
+                 String price, long priceMicros, String subscriptionPeriod, String freeTrialPeriod,
+                 String introductoryPrice, long introductoryPriceAmountMicros, String introductoryPricePeriod,
+                 int introductoryPriceCycles, boolean readFromJson) {
         mOriginalJson = originalJson;
         mSku = sku;
         mType = type;
@@ -72,9 +122,79 @@ public class Item implements Parcelable {
         mIntroductoryPriceAmountMicros = introductoryPriceAmountMicros;
         mIntroductoryPricePeriod = introductoryPricePeriod;
         mIntroductoryPriceCycles = introductoryPriceCycles;
+        mFields = null;
+        mReadFromJson = readFromJson;
+    }
+
+    private Item(JsonFieldReader fields) {
+        mOriginalJson = fields.getJson();
+        mSku = null;
+        mType = null;
+        mTitle = null;
+        mDescription = null;
+        mCurrency = null;
+        mPrice = null;
+        mPriceMicros = 0;
+        mSubscriptionPeriod = null;
+        mFreeTrialPeriod = null;
+        mIntroductoryPrice = null;
+        mIntroductoryPriceAmountMicros = 0;
+        mIntroductoryPricePeriod = null;
+        mIntroductoryPriceCycles = 0;
+        mFields = fields;
+        mReadFromJson = true;
     }
 
     public static Item parseJson(String json) throws JSONException {
+        return parseJson(json, (StringPool) null);
+    }
+
+    /**
+     * @param stringPool pool shared by the items of the same result, it may be null
+     */
+    static Item parseJson(String json, StringPool stringPool) throws JSONException {
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES);
+        reader.setStringPool(stringPool);
+        if (!reader.read()) {
+            return parseJsonObject(json);
+        }
+        return new Item(
+                json,
+                reader.getString(FIELD_SKU),
+                reader.getString(FIELD_TYPE),
+                reader.getString(FIELD_TITLE),
+                reader.getString(FIELD_DESCRIPTION),
+                reader.getString(FIELD_CURRENCY),
+                reader.getString(FIELD_PRICE),
+                reader.getLong(FIELD_PRICE_MICROS),
+                reader.getString(FIELD_SUBSCRIPTION_PERIOD),
+                reader.getString(FIELD_FREE_TRIAL_PERIOD),
+                reader.getString(FIELD_INTRODUCTORY_PRICE_PERIOD),
+                reader.getLong(FIELD_INTRODUCTORY_PRICE_AMOUNT_MICROS),
+                reader.getString(FIELD_INTRODUCTORY_PRICE_PERIOD),
+                reader.getInt(FIELD_INTRODUCTORY_PRICE_CYCLES),
+                true
+        );
+    }
+
+    /**
+     * @param stringPool pool shared by the items of the same result, it is not used by lazy items
+     * @param lazy       true to keep only the offsets of the fields and decode each one when it is got for the first time
+     * @param compact    true to keep only the original json and the offsets, decoding the fields on every access
+     *                   It takes precedence over lazy, since the decoded fields are never kept
+     */
+    static Item parseJson(String json, StringPool stringPool, boolean lazy, boolean compact) throws JSONException {
+        if (!lazy && !compact) {
+            return parseJson(json, stringPool);
+        }
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES, !compact);
+        return reader.read() ? new Item(reader) : parseJsonObject(json);
+    }
+
+    /**
+     * Parses the json with org.json, used when {@link JsonFieldReader} can not read it
+     */
+    static Item parseJsonObject(String json) throws JSONException {
         JSONObject obj = new JSONObject(json);
         return new Item(
                 json,
@@ -95,20 +215,47 @@ public class Item implements Parcelable {
     }
 
     protected Item(Parcel in) {
-        mOriginalJson = in.readString();
-        mSku = in.readString();
-        mType = in.readString();
-        mTitle = in.readString();
-        mDescription = in.readString();
-        mCurrency = in.readString();
-        mPrice = in.readString();
-        mPriceMicros = in.readLong();
-        mSubscriptionPeriod = in.readString();
-        mFreeTrialPeriod = in.readString();
-        mIntroductoryPrice = in.readString();
-        mIntroductoryPriceAmountMicros = in.readLong();
-        mIntroductoryPricePeriod = in.readString();
-        mIntroductoryPriceCycles = in.readInt();
+        this(in, null);
+    }
+
+    /**
+     * @param strings table shared by the items of an {@link ItemDetails} parcel, null for a single item
+     */
+    Item(Parcel in, ParcelStringTable strings) {
+        byte format = readParcelFormat(in);
+        boolean fields = format == PARCEL_FORMAT_FIELDS;
+        // The json is split in the string table, so its keys and repeated values are shared
+        mOriginalJson = ParcelStringTable.readJson(in, strings);
+        mFields = fields ? null : readFields(mOriginalJson, format == PARCEL_FORMAT_JSON);
+        mSku = fields ? ParcelStringTable.readString(in, strings) : null;
+        mType = fields ? ParcelStringTable.readString(in, strings) : null;
+        mTitle = fields ? ParcelStringTable.readString(in, strings) : null;
+        mDescription = fields ? ParcelStringTable.readString(in, strings) : null;
+        mCurrency = fields ? ParcelStringTable.readString(in, strings) : null;
+        mPrice = fields ? ParcelStringTable.readString(in, strings) : null;
+        mPriceMicros = fields ? in.readLong() : 0;
+        mSubscriptionPeriod = fields ? ParcelStringTable.readString(in, strings) : null;
+        mFreeTrialPeriod = fields ? ParcelStringTable.readString(in, strings) : null;
+        mIntroductoryPrice = fields ? ParcelStringTable.readString(in, strings) : null;
+        mIntroductoryPriceAmountMicros = fields ? in.readLong() : 0;
+        mIntroductoryPricePeriod = fields ? ParcelStringTable.readString(in, strings) : null;
+        mIntroductoryPriceCycles = fields ? in.readInt() : 0;
+        mReadFromJson = !fields;
+    }
+
+    private static byte readParcelFormat(Parcel in) {
+        byte format = in.readByte();
+        if (format != PARCEL_FORMAT_FIELDS && format != PARCEL_FORMAT_JSON && format != PARCEL_FORMAT_COMPACT_JSON) {
+            throw new BadParcelableException(String.format(Locale.US, Constants.ERROR_MSG_UNKNOWN_PARCEL_FORMAT, format));
+        }
+        return format;
+    }
+
+    private static JsonFieldReader readFields(String json, boolean cacheValues) {
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES, cacheValues);
+        // The json format is only written if the json was already read by JsonFieldReader
+        reader.read();
+        return reader;
     }
 
     @Override
@@ -118,20 +265,38 @@ public class Item implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(mOriginalJson);
-        dest.writeString(mSku);
-        dest.writeString(mType);
-        dest.writeString(mTitle);
-        dest.writeString(mDescription);
-        dest.writeString(mCurrency);
-        dest.writeString(mPrice);
-        dest.writeLong(mPriceMicros);
-        dest.writeString(mSubscriptionPeriod);
-        dest.writeString(mFreeTrialPeriod);
-        dest.writeString(mIntroductoryPrice);
-        dest.writeLong(mIntroductoryPriceAmountMicros);
-        dest.writeString(mIntroductoryPricePeriod);
-        dest.writeInt(mIntroductoryPriceCycles);
+        writeToParcel(dest, (ParcelStringTable) null);
+    }
+
+    void writeToParcel(Parcel dest, ParcelStringTable strings) {
+        // The fields are written only if they can not be read from the original json,
+        // e.g. the item was created with the public constructor or parsed by org.json
+        byte format = getParcelFormat();
+        dest.writeByte(format);
+        ParcelStringTable.writeJson(dest, mOriginalJson, strings);
+        if (format != PARCEL_FORMAT_FIELDS) {
+            return;
+        }
+        ParcelStringTable.writeString(dest, getSku(), strings);
+        ParcelStringTable.writeString(dest, getType(), strings);
+        ParcelStringTable.writeString(dest, getTitle(), strings);
+        ParcelStringTable.writeString(dest, getDescription(), strings);
+        ParcelStringTable.writeString(dest, getCurrency(), strings);
+        ParcelStringTable.writeString(dest, getPrice(), strings);
+        dest.writeLong(getPriceMicros());
+        ParcelStringTable.writeString(dest, getSubscriptionPeriod(), strings);
+        ParcelStringTable.writeString(dest, getFreeTrialPeriod(), strings);
+        ParcelStringTable.writeString(dest, getIntroductoryPrice(), strings);
+        dest.writeLong(getIntroductoryPriceAmountMicros());
+        ParcelStringTable.writeString(dest, getIntroductoryPricePeriod(), strings);
+        dest.writeInt(getIntroductoryPriceCycles());
+    }
+
+    private byte getParcelFormat() {
+        if (mFields != null) {
+            return mFields.isCachingValues() ? PARCEL_FORMAT_JSON : PARCEL_FORMAT_COMPACT_JSON;
+        }
+        return mReadFromJson ? PARCEL_FORMAT_JSON : PARCEL_FORMAT_FIELDS;
     }
 
     public String getOriginalJson() {
@@ -139,55 +304,55 @@ public class Item implements Parcelable {
     }
 
     public String getSku() {
-        return mSku;
+        return mFields == null ? mSku : mFields.getString(FIELD_SKU);
     }
 
     public String getType() {
-        return mType;
+        return mFields == null ? mType : mFields.getString(FIELD_TYPE);
     }
 
     public String getTitle() {
-        return mTitle;
+        return mFields == null ? mTitle : mFields.getString(FIELD_TITLE);
     }
 
     public String getDescription() {
-        return mDescription;
+        return mFields == null ? mDescription : mFields.getString(FIELD_DESCRIPTION);
     }
 
     public String getCurrency() {
-        return mCurrency;
+        return mFields == null ? mCurrency : mFields.getString(FIELD_CURRENCY);
     }
 
     public String getPrice() {
-        return mPrice;
+        return mFields == null ? mPrice : mFields.getString(FIELD_PRICE);
     }
 
     public long getPriceMicros() {
-        return mPriceMicros;
+        return mFields == null ? mPriceMicros : mFields.getLong(FIELD_PRICE_MICROS);
     }
 
     public String getSubscriptionPeriod() {
-        return mSubscriptionPeriod;
+        return mFields == null ? mSubscriptionPeriod : mFields.getString(FIELD_SUBSCRIPTION_PERIOD);
     }
 
     public String getFreeTrialPeriod() {
-        return mFreeTrialPeriod;
+        return mFields == null ? mFreeTrialPeriod : mFields.getString(FIELD_FREE_TRIAL_PERIOD);
     }
 
     public String getIntroductoryPrice() {
-        return mIntroductoryPrice;
+        return mFields == null ? mIntroductoryPrice : mFields.getString(FIELD_INTRODUCTORY_PRICE_PERIOD);
     }
 
     public long getIntroductoryPriceAmountMicros() {
-        return mIntroductoryPriceAmountMicros;
+        return mFields == null ? mIntroductoryPriceAmountMicros : mFields.getLong(FIELD_INTRODUCTORY_PRICE_AMOUNT_MICROS);
     }
 
     public String getIntroductoryPricePeriod() {
-        return mIntroductoryPricePeriod;
+        return mFields == null ? mIntroductoryPricePeriod : mFields.getString(FIELD_INTRODUCTORY_PRICE_PERIOD);
     }
 
     public int getIntroductoryPriceCycles() {
-        return mIntroductoryPriceCycles;
+        return mFields == null ? mIntroductoryPriceCycles : mFields.getInt(FIELD_INTRODUCTORY_PRICE_CYCLES);
     }
 
     public static final Creator<Item> CREATOR = new Creator<Item>() {
@@ -0,0 +1,172 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory cache of item details (SKU) used by getItemDetails
+ * <p>
+ * The items are kept by type, item id and default locale
+ * until they expire or the least recently used ones are evicted.
+ * Only the item ids that are not cached are requested to the service.
+ * The item ids that the service did not return (e.g. unpublished or not available in the user's country)
+ * are also kept for a shorter time, so they are not requested again and again.
+ * They are kept in a separate and smaller map, so they never evict the items.
+ * The same instance can be shared by many {@link BillingContext}.
+ */
+public class ItemCache {
+
+    public static final long DEFAULT_MISSING_TTL_MILLIS = 5 * 60 * 1000;
+
+    // The missing item ids are kept up to a quarter of the maximum number of items
+    private static final int MISSING_ENTRIES_RATIO = 4;
+
+    private final long mTtlMillis;
+    private final long mMissingTtlMillis;
+    private final Map<String, Entry> mEntries;
+    // Time when each missing item id was requested
+    private final Map<String, Long> mMissingEntries;
+
+    /**
+     * @param ttlMillis  time in milliseconds that an item is valid after being loaded
+     * @param maxEntries maximum number of items kept in the cache
+     */
+    public ItemCache(long ttlMillis, int maxEntries) {
+        this(ttlMillis, maxEntries, Math.min(ttlMillis, DEFAULT_MISSING_TTL_MILLIS));
+    }
+
+    /**
+     * Up to a quarter of maxEntries (at least one) item ids not returned by the service are kept apart
+     *
+     * @param ttlMillis        time in milliseconds that an item is valid after being loaded
+     * @param maxEntries       maximum number of items kept in the cache
+     * @param missingTtlMillis time in milliseconds that an item id not returned by the service is not requested again
+     */
+    public ItemCache(long ttlMillis, int maxEntries, long missingTtlMillis) {
+        if (ttlMillis <= 0 || maxEntries <= 0 || missingTtlMillis < 0) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        mTtlMillis = ttlMillis;
+        mMissingTtlMillis = missingTtlMillis;
+        mEntries = createLruMap(maxEntries);
+        mMissingEntries = createLruMap(Math.max(1, maxEntries / MISSING_ENTRIES_RATIO));
+    }
+
+    /**
+     * Removes all the cached items
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mMissingEntries.clear();
+    }
+
+    /**
+     * @return the number of cached items, the missing item ids are not counted
+     */
+    public synchronized int getSize() {
+        return mEntries.size();
+    }
+
+    /**
+     * @param purchaseType IN_APP or SUBSCRIPTION
+     * @param itemId       item id
+     * @return true if the item id was recently requested but Google Play did not return it
+     */
+    public boolean isMissing(PurchaseType purchaseType, String itemId) {
+        return isMissing(BillingSupport.getItemType(purchaseType), itemId);
+    }
+
+    /**
+     * @return the cached item or null if it is not cached or has expired
+     */
+    synchronized Item get(String itemType, String itemId) {
+        String key = createKey(itemType, itemId);
+        Entry entry = mEntries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry.mLoadedAt, mTtlMillis)) {
+            mEntries.remove(key);
+            return null;
+        }
+        return entry.mItem;
+    }
+
+    synchronized boolean isMissing(String itemType, String itemId) {
+        String key = createKey(itemType, itemId);
+        Long requestedAt = mMissingEntries.get(key);
+
+        if (requestedAt == null) {
+            return false;
+        }
+        if (isExpired(requestedAt, mMissingTtlMillis)) {
+            mMissingEntries.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    synchronized void put(String itemType, Item item) {
+        String key = createKey(itemType, item.getSku());
+        mEntries.put(key, new Entry(item, SystemClock.elapsedRealtime()));
+        mMissingEntries.remove(key);
+    }
+
+    synchronized void putMissing(String itemType, String itemId) {
+        if (mMissingTtlMillis > 0) {
+            String key = createKey(itemType, itemId);
+            mMissingEntries.put(key, SystemClock.elapsedRealtime());
+            mEntries.remove(key);
+        }
+    }
+
+    private static boolean isExpired(long loadedAt, long ttlMillis) {
+        return SystemClock.elapsedRealtime() - loadedAt >= ttlMillis;
+    }
+
+    private String createKey(String itemType, String itemId) {
+        return itemType + '/' + Locale.getDefault() + '/' + itemId;
+    }
+
+    private static <V> Map<String, V> createLruMap(final int maxEntries) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static class Entry {
+
+        private final Item mItem;
+        private final long mLoadedAt;
+
+        Entry(Item item, long loadedAt) {
+            mItem = item;
+            mLoadedAt = loadedAt;
+        }
+    }
+}
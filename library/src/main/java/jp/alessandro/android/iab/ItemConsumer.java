@@ -0,0 +1,137 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.RemoteException;
+import android.text.TextUtils;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import jp.alessandro.android.iab.response.ConsumeResponse;
+
+class ItemConsumer {
+
+    private final BillingContext mContext;
+    private final int mApiVersion;
+    private final String mPackageName;
+    private final EntitlementStore mEntitlementStore;
+
+    ItemConsumer(BillingContext context) {
+        mContext = context;
+        mApiVersion = context.getApiVersion();
+        mPackageName = context.getContext().getPackageName();
+        mEntitlementStore = context.getEntitlementStore();
+    }
+
+    /**
+     * Consumes the given item
+     * The inventory is loaded to resolve the token of the item
+     *
+     * @param service in-app billing service
+     * @param itemId  consumable item id
+     * @throws BillingException if the item could not be consumed
+     */
+    void consume(IInAppBillingService service, String itemId) throws BillingException {
+        PurchaseGetter getter = new PurchaseGetter(mContext);
+        Purchases purchases = getter.get(service, Constants.ITEM_TYPE_INAPP);
+
+        consume(service, getPurchase(purchases, itemId));
+    }
+
+    /**
+     * Consumes all the given items over the same service connection
+     * The inventory is loaded only once to resolve the token of every item
+     * Duplicated item ids are consumed only once
+     *
+     * @param service in-app billing service
+     * @param itemIds consumable item ids
+     * @return one response per item id, in the same order they were given
+     * @throws BillingException if the inventory could not be loaded
+     */
+    List<ConsumeResponse> consume(IInAppBillingService service, Collection<String> itemIds) throws BillingException {
+        PurchaseGetter getter = new PurchaseGetter(mContext);
+        Purchases purchases = getter.get(service, Constants.ITEM_TYPE_INAPP);
+
+        List<ConsumeResponse> responses = new ArrayList<>();
+        boolean removed = false;
+        for (String itemId : new LinkedHashSet<>(itemIds)) {
+            BillingException exception = null;
+            try {
+                consumeToken(service, getPurchase(purchases, itemId).getToken());
+                removed |= removeEntitlement(itemId);
+            } catch (BillingException e) {
+                exception = e;
+            }
+            responses.add(new ConsumeResponse(itemId, exception));
+        }
+        if (removed) {
+            saveEntitlements();
+        }
+        return responses;
+    }
+
+    /**
+     * Consumes the given purchase using its token directly
+     *
+     * @param service  in-app billing service
+     * @param purchase purchase to be consumed
+     * @throws BillingException if the item could not be consumed
+     */
+    void consume(IInAppBillingService service, Purchase purchase) throws BillingException {
+        consumeToken(service, purchase.getToken());
+        if (removeEntitlement(purchase.getSku())) {
+            saveEntitlements();
+        }
+    }
+
+    private void consumeToken(IInAppBillingService service, String token) throws BillingException {
+        int response;
+        try {
+            response = service.consumePurchase(mApiVersion, mPackageName, token);
+        } catch (RemoteException e) {
+            throw new BillingException(Constants.ERROR_REMOTE_EXCEPTION, e.getMessage());
+        }
+        if (response != Constants.BILLING_RESPONSE_RESULT_OK) {
+            throw new BillingException(response, Constants.ERROR_MSG_CONSUME);
+        }
+    }
+
+    private Purchase getPurchase(Purchases purchases, String itemId) throws BillingException {
+        Purchase purchase = purchases.getByPurchaseId(itemId);
+
+        if (purchase == null || TextUtils.isEmpty(purchase.getToken())) {
+            throw new BillingException(Constants.ERROR_PURCHASE_DATA,
+                    Constants.ERROR_MSG_PURCHASE_OR_TOKEN_NULL);
+        }
+        return purchase;
+    }
+
+    private boolean removeEntitlement(String itemId) {
+        return mEntitlementStore != null && mEntitlementStore.remove(Constants.ITEM_TYPE_INAPP, itemId);
+    }
+
+    private void saveEntitlements() {
+        mEntitlementStore.save();
+    }
+}
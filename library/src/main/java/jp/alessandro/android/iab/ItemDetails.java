@@ -18,35 +18,151 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-public class ItemDetails {
+public class ItemDetails implements Parcelable {
 
     private final Map<String, Item> mMap = new LinkedHashMap<>();
 
+    // Read-only copy of the values, built once and shared by every call until the next put
+    private volatile List<Item> mAll;
+    // Built by ItemGetter when the result is assembled or on the first sorted or filtered query
+    private volatile ItemDetailsIndex mIndex;
+
     public ItemDetails() {
     }
 
+    protected ItemDetails(Parcel in) {
+        int size = in.readInt();
+        ParcelStringTable strings = new ParcelStringTable();
+        for (int i = 0; i < size; i++) {
+            put(new Item(in, strings));
+        }
+    }
+
     public boolean hasItemId(String itemId) {
         return mMap.containsKey(itemId);
     }
 
+    /**
+     * The returned list is read-only and it is shared between calls,
+     * so it can be called on every bind without allocating a new list
+     *
+     * @return all the items in the order they were added
+     */
     public List<Item> getAll() {
-        return new ArrayList<>(mMap.values());
+        List<Item> all = mAll;
+        if (all == null) {
+            all = Collections.unmodifiableList(new ArrayList<>(mMap.values()));
+            mAll = all;
+        }
+        return all;
+    }
+
+    /**
+     * @param index position in {@link ItemDetails#getAll()}
+     * @return the item at the given position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Item get(int index) {
+        return getAll().get(index);
     }
 
     public Item getByItemId(String itemId) {
         return mMap.get(itemId);
     }
 
+    /**
+     * @return a read-only list of all the items sorted by {@link Item#getPriceMicros()}
+     */
+    public List<Item> getAllSortedByPrice() {
+        return getIndex().getSortedByPrice();
+    }
+
+    /**
+     * @param fromPriceMicros inclusive
+     * @param toPriceMicros   exclusive
+     * @return a read-only list of the items in the price range, sorted by price
+     */
+    public List<Item> getByPriceMicros(long fromPriceMicros, long toPriceMicros) {
+        return getIndex().getByPriceMicros(fromPriceMicros, toPriceMicros);
+    }
+
+    /**
+     * @param type "inapp" or "subs"
+     * @return a read-only list of the items of the given type, sorted by price
+     */
+    public List<Item> getByType(String type) {
+        return getIndex().getByType(type);
+    }
+
+    /**
+     * @param subscriptionPeriod ISO 8601 period, e.g. "P1M" or "P1Y"
+     * @return a read-only list of the subscriptions with the given period, sorted by price
+     */
+    public List<Item> getBySubscriptionPeriod(String subscriptionPeriod) {
+        return getIndex().getBySubscriptionPeriod(subscriptionPeriod);
+    }
+
     public int getSize() {
         return mMap.size();
     }
 
     void put(Item item) {
         mMap.put(item.getSku(), item);
+        mAll = null;
+        mIndex = null;
+    }
+
+    /**
+     * Builds the sorted and filtered views before the result is delivered
+     */
+    ItemDetails buildIndex() {
+        getIndex();
+        return this;
+    }
+
+    private ItemDetailsIndex getIndex() {
+        ItemDetailsIndex index = mIndex;
+        if (index == null) {
+            index = new ItemDetailsIndex(getAll());
+            mIndex = index;
+        }
+        return index;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * The strings repeated by the items are written only once
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        List<Item> all = getAll();
+        dest.writeInt(all.size());
+        ParcelStringTable strings = new ParcelStringTable();
+        for (Item item : all) {
+            item.writeToParcel(dest, strings);
+        }
+    }
+
+    public static final Creator<ItemDetails> CREATOR = new Creator<ItemDetails>() {
+        public ItemDetails createFromParcel(Parcel source) {
+            return new ItemDetails(source);
+        }
+
+        public ItemDetails[] newArray(int size) {
+            return new ItemDetails[size];
+        }
+    };
+}
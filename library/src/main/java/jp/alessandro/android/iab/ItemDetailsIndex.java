@@ -0,0 +1,137 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted and filtered views of {@link ItemDetails} by price, type and subscription period
+ * They are built once from a fixed list of items and they are never modified
+ */
+class ItemDetailsIndex {
+
+    private final List<Item> mByPrice;
+    private final long[] mPrices;
+    private final Map<String, List<Item>> mByType;
+    private final Map<String, List<Item>> mByPeriod;
+
+    ItemDetailsIndex(List<Item> items) {
+        Item[] sorted = sortByPrice(items);
+        mByPrice = Collections.unmodifiableList(Arrays.asList(sorted));
+        mPrices = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            mPrices[i] = sorted[i].getPriceMicros();
+        }
+        Map<String, List<Item>> byType = new HashMap<>();
+        Map<String, List<Item>> byPeriod = new HashMap<>();
+        for (Item item : sorted) {
+            add(byType, item.getType(), item);
+            add(byPeriod, item.getSubscriptionPeriod(), item);
+        }
+        mByType = readOnly(byType);
+        mByPeriod = readOnly(byPeriod);
+    }
+
+    List<Item> getSortedByPrice() {
+        return mByPrice;
+    }
+
+    /**
+     * @param fromPriceMicros inclusive
+     * @param toPriceMicros   exclusive
+     * @return the items in the range sorted by price
+     */
+    List<Item> getByPriceMicros(long fromPriceMicros, long toPriceMicros) {
+        if (fromPriceMicros >= toPriceMicros) {
+            return Collections.emptyList();
+        }
+        return mByPrice.subList(lowerBound(fromPriceMicros), lowerBound(toPriceMicros));
+    }
+
+    List<Item> getByType(String type) {
+        return get(mByType, type);
+    }
+
+    List<Item> getBySubscriptionPeriod(String period) {
+        return get(mByPeriod, period);
+    }
+
+    /**
+     * @return the first position whose price is equal or greater than the given price
+     */
+    private int lowerBound(long priceMicros) {
+        int low = 0;
+        int high = mPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mPrices[mid] < priceMicros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Item[] sortByPrice(List<Item> items) {
+        Item[] sorted = items.toArray(new Item[items.size()]);
+        // The sort is stable, items with the same price keep their order
+        Arrays.sort(sorted, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                long priceA = a.getPriceMicros();
+                long priceB = b.getPriceMicros();
+                return priceA < priceB ? -1 : (priceA == priceB ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    private static List<Item> get(Map<String, List<Item>> map, String key) {
+        List<Item> list = map.get(key);
+        return list == null ? Collections.<Item>emptyList() : list;
+    }
+
+    private static void add(Map<String, List<Item>> map, String key, Item item) {
+        if (TextUtils.isEmpty(key)) {
+            return;
+        }
+        List<Item> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        list.add(item);
+    }
+
+    private static Map<String, List<Item>> readOnly(Map<String, List<Item>> map) {
+        for (Map.Entry<String, List<Item>> entry : map.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return map;
+    }
+}
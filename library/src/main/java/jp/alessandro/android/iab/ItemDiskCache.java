@@ -0,0 +1,223 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.content.Context;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jp.alessandro.android.iab.logger.Logger;
+
+/**
+ * Keeps the item details (SKU) in the app-private storage
+ * so they can be shown on the next launch before Google Play answers
+ * <p>
+ * There is one file per type and default locale, containing the original json of each item and when it was stored.
+ * The files are kept in memory after they are read and the items older than {@link ItemDiskCache#MAX_AGE_MILLIS} are ignored.
+ */
+class ItemDiskCache {
+
+    static final String DIRECTORY_NAME = "easy_checkout";
+    static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    // An unchanged item is stored again after this time, so it does not expire while it is still loaded
+    private static final long REFRESH_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String CHARSET = "UTF-8";
+    private static final String KEY_JSON = "json";
+    private static final String KEY_TIME = "time";
+
+    private static final Map<String, ItemDiskCache> sInstances = new HashMap<>();
+
+    private final File mDirectory;
+    private final Logger mLogger;
+    private final Map<String, JSONObject> mFiles = new HashMap<>();
+
+    ItemDiskCache(Context context, Logger logger) {
+        mDirectory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        mLogger = logger;
+    }
+
+    /**
+     * Returns the cache of the given context, all the billing contexts share the same instance
+     * so the files kept in memory are never stale
+     */
+    static ItemDiskCache getInstance(Context context, Logger logger) {
+        ItemDiskCache cache = new ItemDiskCache(context, logger);
+        synchronized (sInstances) {
+            String path = cache.mDirectory.getAbsolutePath();
+            ItemDiskCache instance = sInstances.get(path);
+            if (instance == null) {
+                instance = cache;
+                sInstances.put(path, instance);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * @param itemType "inapp" or "subs"
+     * @param itemIds  requested item ids
+     * @return the stored items in the requested order or null if any of them is not stored or too old
+     */
+    synchronized ItemDetails read(String itemType, List<String> itemIds) {
+        JSONObject stored = getStored(getFile(itemType));
+        ItemDetails itemDetails = new ItemDetails();
+        StringPool stringPool = new StringPool();
+        long now = System.currentTimeMillis();
+        try {
+            for (String itemId : itemIds) {
+                JSONObject entry = stored.optJSONObject(itemId);
+                if (entry == null || now - entry.optLong(KEY_TIME) > MAX_AGE_MILLIS) {
+                    return null;
+                }
+                itemDetails.put(Item.parseJson(entry.getString(KEY_JSON), stringPool));
+            }
+        } catch (JSONException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+            return null;
+        }
+        return itemDetails.buildIndex();
+    }
+
+    /**
+     * Stores the given items, keeping the other items of the same type
+     * The file is not written if all of them are already stored and fresh
+     */
+    synchronized void write(String itemType, ItemDetails itemDetails) {
+        File file = getFile(itemType);
+        JSONObject stored = getStored(file);
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        try {
+            for (Item item : itemDetails.getAll()) {
+                if (!isFresh(stored.optJSONObject(item.getSku()), item, now)) {
+                    stored.put(item.getSku(), new JSONObject().put(KEY_JSON, item.getOriginalJson()).put(KEY_TIME, now));
+                    changed = true;
+                }
+            }
+            if (changed) {
+                writeFile(file, stored.toString());
+            }
+        } catch (JSONException | IOException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+            // The file is read again next time, so the memory does not differ from it
+            mFiles.remove(file.getName());
+        }
+    }
+
+    /**
+     * @return true if both contain the same items with the same details in the same order
+     */
+    static boolean isSame(ItemDetails a, ItemDetails b) {
+        List<Item> itemsA = a.getAll();
+        List<Item> itemsB = b.getAll();
+
+        if (itemsA.size() != itemsB.size()) {
+            return false;
+        }
+        for (int i = 0; i < itemsA.size(); i++) {
+            if (!itemsA.get(i).getOriginalJson().equals(itemsB.get(i).getOriginalJson())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFresh(JSONObject entry, Item item, long now) {
+        return entry != null
+                && item.getOriginalJson().equals(entry.optString(KEY_JSON, null))
+                && now - entry.optLong(KEY_TIME) < REFRESH_MILLIS;
+    }
+
+    private JSONObject getStored(File file) {
+        JSONObject stored = mFiles.get(file.getName());
+        if (stored == null) {
+            stored = readFile(file);
+            mFiles.put(file.getName(), stored);
+        }
+        return stored;
+    }
+
+    private File getFile(String itemType) {
+        return new File(mDirectory, String.format(Locale.US, "items_%s_%s.json", itemType, Locale.getDefault()));
+    }
+
+    private JSONObject readFile(File file) {
+        try {
+            return new JSONObject(readString(file));
+        } catch (FileNotFoundException e) {
+            return new JSONObject();
+        } catch (IOException | JSONException e) {
+            mLogger.e(Logger.TAG, e.getMessage(), e);
+            if (!file.delete()) {
+                mLogger.w(Logger.TAG, "Failed to delete " + file.getName());
+            }
+            return new JSONObject();
+        }
+    }
+
+    private String readString(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString(CHARSET);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a temporary file and renames it, so a crash never leaves a broken file
+     */
+    private void writeFile(File file, String content) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Failed to create " + mDirectory.getName());
+        }
+        File tmp = new File(mDirectory, file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(content.getBytes(CHARSET));
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmp.getName());
+        }
+    }
+}
@@ -26,7 +26,9 @@ import com.android.vending.billing.IInAppBillingService;
 import org.json.JSONException;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import jp.alessandro.android.iab.logger.Logger;
 
@@ -37,11 +39,17 @@ class ItemGetter {
     private final int mApiVersion;
     private final String mPackageName;
     private final Logger mLogger;
+    private final boolean mLazyJsonParsing;
+    private final boolean mCompactMode;
+    private final ItemCache mCache;
 
     ItemGetter(BillingContext context) {
         mApiVersion = context.getApiVersion();
         mPackageName = context.getContext().getPackageName();
         mLogger = context.getLogger();
+        mLazyJsonParsing = context.isLazyJsonParsingEnabled();
+        mCompactMode = context.isCompactModeEnabled();
+        mCache = context.getItemCache();
     }
 
     /**
@@ -50,6 +58,7 @@ class ItemGetter {
      * a String ArrayList of product IDs with key "ITEM_ID_LIST",
      * where each string is a product ID for an purchasable item.
      * See https://developer.android.com/google/play/billing/billing_integrate.html#QueryDetails
+     * If there is an {@link ItemCache}, only the items that are not cached are requested
      *
      * @param service  in-app billing service
      * @param itemType "inapp" or "subs"
@@ -61,7 +70,84 @@ class ItemGetter {
                     String itemType,
                     ArrayList<String> itemIds) throws BillingException {
 
+        if (mCache == null) {
+            return getFromService(service, itemType, itemIds).buildIndex();
+        }
+        ItemDetails cached = new ItemDetails();
+        ArrayList<String> missingItemIds = getFromCache(itemType, itemIds, cached);
+
+        if (missingItemIds.isEmpty()) {
+            return cached.buildIndex();
+        }
+        ItemDetails loaded = getFromService(service, itemType, missingItemIds);
+        putInCache(itemType, missingItemIds, loaded);
+
+        return merge(itemIds, cached, loaded).buildIndex();
+    }
+
+    /**
+     * Does not need the service, so it can be checked before binding it
+     *
+     * @param itemType "inapp" or "subs"
+     * @param itemIds  contains the list of item ids that you want to request
+     * @return the cached items if none of the item ids needs to be requested, otherwise null
+     */
+    ItemDetails getCached(String itemType, ArrayList<String> itemIds) {
+        if (mCache == null) {
+            return null;
+        }
+        ItemDetails cached = new ItemDetails();
+        return getFromCache(itemType, itemIds, cached).isEmpty() ? cached.buildIndex() : null;
+    }
+
+    /**
+     * Puts the cached items in the given item details
+     *
+     * @return the item ids that need to be requested
+     */
+    private ArrayList<String> getFromCache(String itemType, ArrayList<String> itemIds, ItemDetails cached) {
+        ArrayList<String> missingItemIds = new ArrayList<>();
+        for (String itemId : itemIds) {
+            Item item = mCache.get(itemType, itemId);
+            if (item != null) {
+                cached.put(item);
+            } else if (!mCache.isMissing(itemType, itemId)) {
+                missingItemIds.add(itemId);
+            }
+        }
+        return missingItemIds;
+    }
+
+    /**
+     * Every returned item is cached by its own item id
+     * The item ids that were not returned are kept as missing only if every returned item was requested,
+     * otherwise one of them may have been returned with a different item id
+     */
+    private void putInCache(String itemType, ArrayList<String> itemIds, ItemDetails loaded) {
+        Set<String> requested = new HashSet<>(itemIds);
+        boolean allRequested = true;
+
+        for (Item item : loaded.getAll()) {
+            mCache.put(itemType, item);
+            allRequested &= requested.contains(item.getSku());
+        }
+        if (!allRequested) {
+            return;
+        }
+        for (String itemId : requested) {
+            if (!loaded.hasItemId(itemId)) {
+                // Unpublished or not available, it will not be requested until it expires
+                mCache.putMissing(itemType, itemId);
+            }
+        }
+    }
+
+    private ItemDetails getFromService(IInAppBillingService service,
+                                       String itemType,
+                                       ArrayList<String> itemIds) throws BillingException {
+
         ItemDetails itemDetails = new ItemDetails();
+        StringPool stringPool = new StringPool();
         List<ArrayList<String>> splitItemIdList = new ArrayList<>();
 
         // There reason why it splits the item ids per request
@@ -80,7 +166,7 @@ class ItemGetter {
                 Bundle itemIdsBundle = createBundleItemListFromArray(splitItemIds);
                 Bundle skuDetails = service.getSkuDetails(mApiVersion, mPackageName, itemType, itemIdsBundle);
                 List<String> detailList = getItemsFromResponse(skuDetails);
-                putAll(detailList, itemDetails);
+                putAll(detailList, itemDetails, stringPool);
 
             } catch (RemoteException e) {
                 throw new BillingException(Constants.ERROR_REMOTE_EXCEPTION, e.getMessage());
@@ -89,6 +175,35 @@ class ItemGetter {
         return itemDetails;
     }
 
+    /**
+     * Keeps every loaded item in the order returned by the service,
+     * each cached item is put before the first loaded item that was requested after it
+     * So nothing is dropped and the order is the same as when nothing is cached
+     */
+    private ItemDetails merge(List<String> itemIds, ItemDetails cached, ItemDetails loaded) {
+        ItemDetails itemDetails = new ItemDetails();
+        int next = 0;
+
+        for (Item item : loaded.getAll()) {
+            int position = itemIds.indexOf(item.getSku());
+            for (; next < position; next++) {
+                putCached(itemDetails, cached, itemIds.get(next));
+            }
+            itemDetails.put(item);
+        }
+        for (; next < itemIds.size(); next++) {
+            putCached(itemDetails, cached, itemIds.get(next));
+        }
+        return itemDetails;
+    }
+
+    private void putCached(ItemDetails itemDetails, ItemDetails cached, String itemId) {
+        Item item = cached.getByItemId(itemId);
+        if (item != null) {
+            itemDetails.put(item);
+        }
+    }
+
     private Bundle createBundleItemListFromArray(ArrayList<String> itemIds) {
         Bundle bundle = new Bundle();
         bundle.putStringArrayList(Constants.RESPONSE_ITEM_ID_LIST, itemIds);
@@ -113,10 +228,12 @@ class ItemGetter {
         return detailsList;
     }
 
-    private void putAll(List<String> detailsList, ItemDetails itemDetails) throws BillingException {
+    private void putAll(List<String> detailsList,
+                        ItemDetails itemDetails,
+                        StringPool stringPool) throws BillingException {
         for (String response : detailsList) {
             try {
-                Item product = Item.parseJson(response);
+                Item product = Item.parseJson(response, stringPool, mLazyJsonParsing, mCompactMode);
                 itemDetails.put(product);
             } catch (JSONException e) {
                 mLogger.e(Logger.TAG, e.getMessage(), e);
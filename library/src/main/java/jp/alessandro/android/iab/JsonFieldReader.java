@@ -0,0 +1,467 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass reader for the flat JSON objects returned by Google Play
+ * <p>
+ * It keeps only the offsets of the top level fields that were asked for and skips the others
+ * without building a JSONObject. Each value is decoded when it is got for the first time,
+ * so the reader can be kept to materialize the fields lazily.
+ * Only strict JSON with the expected value types is accepted. For anything else {@link JsonFieldReader#read()}
+ * returns false and the caller must parse the JSON with org.json, so the values are always the same as
+ * the ones given by optString, optLong, optInt and optBoolean.
+ */
+class JsonFieldReader {
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LONG = 1;
+    static final int TYPE_BOOLEAN = 2;
+    // String that is usually repeated in many objects, it is shared through the string pool if there is one
+    static final int TYPE_POOLED_STRING = 3;
+
+    private static final int NOT_FOUND = -1;
+    private static final int INVALID = -2;
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private final String mJson;
+    private final String[] mNames;
+    private final int[] mTypes;
+    private final int[] mStarts;
+    private final int[] mEnds;
+    private final boolean[] mEscapedValues;
+    // Decoded strings, written on first access. A race only decodes the same immutable value twice
+    private final String[] mValues;
+    private final boolean mCacheValues;
+
+    private StringPool mStringPool;
+
+    private int mPos;
+    private boolean mEscaped;
+
+    /**
+     * @param json  JSON object to read
+     * @param names names of the fields to keep
+     * @param types type of each field, one of TYPE_STRING, TYPE_POOLED_STRING, TYPE_LONG or TYPE_BOOLEAN
+     */
+    JsonFieldReader(String json, String[] names, int[] types) {
+        this(json, names, types, true);
+    }
+
+    /**
+     * @param json        JSON object to read
+     * @param names       names of the fields to keep
+     * @param types       type of each field, one of TYPE_STRING, TYPE_POOLED_STRING, TYPE_LONG or TYPE_BOOLEAN
+     * @param cacheValues false to decode the strings again on every access instead of keeping a copy of them
+     */
+    JsonFieldReader(String json, String[] names, int[] types, boolean cacheValues) {
+        mJson = json;
+        mNames = names;
+        mTypes = types;
+        mStarts = new int[names.length];
+        mEnds = new int[names.length];
+        mEscapedValues = new boolean[names.length];
+        mValues = cacheValues ? new String[names.length] : null;
+        mCacheValues = cacheValues;
+        Arrays.fill(mStarts, -1);
+    }
+
+    /**
+     * @return true if all the fields were read, false if the JSON must be parsed by org.json
+     */
+    boolean read() {
+        mPos = 0;
+        skipWhitespace();
+        if (!consume('{')) {
+            return false;
+        }
+        skipWhitespace();
+        if (consume('}')) {
+            return true;
+        }
+        do {
+            if (!readField()) {
+                return false;
+            }
+            skipWhitespace();
+        } while (consume(','));
+
+        return consume('}');
+    }
+
+    String getJson() {
+        return mJson;
+    }
+
+    boolean isCachingValues() {
+        return mCacheValues;
+    }
+
+    /**
+     * @param stringPool pool shared by the objects of the same result, used for the TYPE_POOLED_STRING fields
+     */
+    void setStringPool(StringPool stringPool) {
+        mStringPool = stringPool;
+    }
+
+    /**
+     * The fields are got by their index in the names given to the constructor, so no name is compared
+     *
+     * @param field index of the field in the names
+     */
+    boolean has(int field) {
+        return mStarts[field] >= 0;
+    }
+
+    /**
+     * @param field index of the field in the names
+     * @return the same as JSONObject.optString
+     */
+    String getString(int field) {
+        String value = mCacheValues ? mValues[field] : null;
+        if (value == null && mStarts[field] >= 0) {
+            value = decodeString(field);
+            if (mCacheValues) {
+                mValues[field] = value;
+            }
+        }
+        return value == null ? "" : value;
+    }
+
+    /**
+     * @param field index of the field in the names
+     * @return the same as JSONObject.optLong
+     */
+    long getLong(int field) {
+        int start = mStarts[field];
+        if (start < 0) {
+            return 0;
+        }
+        boolean negative = mJson.charAt(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < mEnds[field]; i++) {
+            value = value * 10 + (mJson.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @param field index of the field in the names
+     * @return the same as JSONObject.optInt
+     */
+    int getInt(int field) {
+        return (int) getLong(field);
+    }
+
+    /**
+     * @param field index of the field in the names
+     * @return the same as JSONObject.optBoolean
+     */
+    boolean getBoolean(int field) {
+        int start = mStarts[field];
+        return start >= 0 && mJson.charAt(start) == 't';
+    }
+
+    private String decodeString(int field) {
+        int start = mStarts[field];
+        int end = mEnds[field];
+        if (mStringPool == null || mTypes[field] != TYPE_POOLED_STRING) {
+            return mEscapedValues[field] ? unescape(start, end) : mJson.substring(start, end);
+        }
+        return mEscapedValues[field] ? mStringPool.get(unescape(start, end)) : mStringPool.get(mJson, start, end);
+    }
+
+    private boolean readField() {
+        skipWhitespace();
+        int field = readName();
+        if (field == INVALID) {
+            return false;
+        }
+        skipWhitespace();
+        if (!consume(':')) {
+            return false;
+        }
+        skipWhitespace();
+        return field == NOT_FOUND ? skipValue(0) : readValue(field);
+    }
+
+    private int readName() {
+        int start = mPos + 1;
+        int end = peek() == '"' ? findStringEnd(mPos) : -1;
+        if (end < 0) {
+            return INVALID;
+        }
+        mPos = end;
+        if (mEscaped) {
+            String name = unescape(start, end - 1);
+            for (int i = 0; i < mNames.length; i++) {
+                if (mNames[i].equals(name)) {
+                    return i;
+                }
+            }
+            return NOT_FOUND;
+        }
+        int length = end - 1 - start;
+        for (int i = 0; i < mNames.length; i++) {
+            if (mNames[i].length() == length && mJson.regionMatches(start, mNames[i], 0, length)) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean readValue(int field) {
+        if (mTypes[field] == TYPE_STRING || mTypes[field] == TYPE_POOLED_STRING) {
+            int end = peek() == '"' ? findStringEnd(mPos) : -1;
+            if (end < 0) {
+                return false;
+            }
+            setValue(field, mPos + 1, end - 1, mEscaped);
+            mPos = end;
+            return true;
+        }
+        int start = mPos;
+        int end = skipLiteral();
+        setValue(field, start, end, false);
+        if (mTypes[field] == TYPE_BOOLEAN) {
+            return isRegion(start, end, "true") || isRegion(start, end, "false");
+        }
+        return isLong(start, end);
+    }
+
+    private void setValue(int field, int start, int end, boolean escaped) {
+        mStarts[field] = start;
+        mEnds[field] = end;
+        mEscapedValues[field] = escaped;
+    }
+
+    /**
+     * @return the index after the literal that starts at the current position
+     */
+    private int skipLiteral() {
+        int length = mJson.length();
+        while (mPos < length && ",}] \t\r\n".indexOf(mJson.charAt(mPos)) < 0) {
+            mPos++;
+        }
+        return mPos;
+    }
+
+    private boolean isRegion(int start, int end, String literal) {
+        return end - start == literal.length() && mJson.regionMatches(start, literal, 0, literal.length());
+    }
+
+    private boolean skipValue(int depth) {
+        char c = peek();
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+        if (c == '"') {
+            int end = findStringEnd(mPos);
+            if (end < 0) {
+                return false;
+            }
+            mPos = end;
+            return true;
+        }
+        if (c == '{') {
+            return skipContainer(depth, '}', true);
+        }
+        if (c == '[') {
+            return skipContainer(depth, ']', false);
+        }
+        int start = mPos;
+        return isLiteral(start, skipLiteral());
+    }
+
+    private boolean skipContainer(int depth, char close, boolean isObject) {
+        mPos++;
+        skipWhitespace();
+        if (consume(close)) {
+            return true;
+        }
+        do {
+            skipWhitespace();
+            if (isObject && !skipName()) {
+                return false;
+            }
+            if (!skipValue(depth + 1)) {
+                return false;
+            }
+            skipWhitespace();
+        } while (consume(','));
+
+        return consume(close);
+    }
+
+    private boolean skipName() {
+        int end = peek() == '"' ? findStringEnd(mPos) : -1;
+        if (end < 0) {
+            return false;
+        }
+        mPos = end;
+        skipWhitespace();
+        if (!consume(':')) {
+            return false;
+        }
+        skipWhitespace();
+        return true;
+    }
+
+    /**
+     * Validates the string that starts at the given quote
+     *
+     * @return the index after the closing quote or -1 if it is not a valid string
+     */
+    private int findStringEnd(int quote) {
+        int length = mJson.length();
+        int i = quote + 1;
+        mEscaped = false;
+        while (i < length) {
+            char c = mJson.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c < 0x20) {
+                return -1;
+            }
+            if (c == '\\') {
+                int escapeLength = getEscapeLength(i + 1);
+                if (escapeLength < 0) {
+                    return -1;
+                }
+                mEscaped = true;
+                i += escapeLength;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private int getEscapeLength(int index) {
+        if (index >= mJson.length()) {
+            return -1;
+        }
+        char c = mJson.charAt(index);
+        if (c != 'u') {
+            return "\"\\/bfnrt".indexOf(c) < 0 ? -1 : 1;
+        }
+        if (index + 5 > mJson.length()) {
+            return -1;
+        }
+        for (int i = index + 1; i <= index + 4; i++) {
+            if (Character.digit(mJson.charAt(i), 16) < 0) {
+                return -1;
+            }
+        }
+        return 5;
+    }
+
+    /**
+     * Decodes the escape sequences of a string already validated by findStringEnd
+     */
+    private String unescape(int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = mJson.charAt(i++);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = mJson.charAt(i++);
+            if (c == 'u') {
+                builder.append((char) Integer.parseInt(mJson.substring(i, i + 4), 16));
+                i += 4;
+            } else {
+                builder.append(unescapeChar(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static char unescapeChar(char c) {
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * Only plain decimal integers are accepted, org.json reads octal and hexadecimal values differently
+     */
+    private boolean isLong(int start, int end) {
+        int first = start < end && mJson.charAt(start) == '-' ? start + 1 : start;
+        int digits = end - first;
+        if (digits == 0 || digits > MAX_LONG_DIGITS || (digits > 1 && mJson.charAt(first) == '0')) {
+            return false;
+        }
+        for (int i = first; i < end; i++) {
+            if (mJson.charAt(i) < '0' || mJson.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isLiteral(int start, int end) {
+        if (isRegion(start, end, "true") || isRegion(start, end, "false") || isRegion(start, end, "null")) {
+            return true;
+        }
+        if (isLong(start, end)) {
+            return true;
+        }
+        String literal = mJson.substring(start, end);
+        // org.json rejects numbers that are infinite as a double
+        return NUMBER.matcher(literal).matches() && !Double.isInfinite(Double.parseDouble(literal));
+    }
+
+    private void skipWhitespace() {
+        int length = mJson.length();
+        while (mPos < length && " \t\r\n".indexOf(mJson.charAt(mPos)) >= 0) {
+            mPos++;
+        }
+    }
+
+    private char peek() {
+        return mPos < mJson.length() ? mJson.charAt(mPos) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            mPos++;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strings of a bulk parcel, as written by {@link Purchases} and {@link ItemDetails}
+ * The first occurrence of a string is written in full and the next ones only as its index,
+ * so a value repeated by all the elements (type, currency, package name...) is written once
+ * The original json is split at its quotes, so its keys and repeated values are also written once
+ * Unique values, as the signature, are written with Parcel.writeString instead
+ * A table is used either to write or to read one parcel, in the same order
+ */
+final class ParcelStringTable {
+
+    private static final int NULL = -1;
+    private static final int NEW = -2;
+
+    private final Map<String, Integer> mIndexes = new HashMap<>();
+    private final List<String> mStrings = new ArrayList<>();
+
+    void write(Parcel dest, String value) {
+        if (value == null) {
+            dest.writeInt(NULL);
+            return;
+        }
+        Integer index = mIndexes.get(value);
+        if (index != null) {
+            dest.writeInt(index);
+            return;
+        }
+        mIndexes.put(value, mIndexes.size());
+        dest.writeInt(NEW);
+        dest.writeString(value);
+    }
+
+    void writeJson(Parcel dest, String json) {
+        if (json == null) {
+            dest.writeInt(NULL);
+            return;
+        }
+        String[] parts = json.split("\"", -1);
+        dest.writeInt(parts.length);
+        for (String part : parts) {
+            write(dest, part);
+        }
+    }
+
+    String readJson(Parcel in) {
+        int count = in.readInt();
+        if (count == NULL) {
+            return null;
+        }
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append('"');
+            }
+            json.append(read(in));
+        }
+        return json.toString();
+    }
+
+    String read(Parcel in) {
+        int index = in.readInt();
+        if (index == NULL) {
+            return null;
+        }
+        if (index == NEW) {
+            String value = in.readString();
+            mStrings.add(value);
+            return value;
+        }
+        return mStrings.get(index);
+    }
+
+    /**
+     * @param strings table of the bulk parcel or null to write the string as it is
+     */
+    static void writeString(Parcel dest, String value, ParcelStringTable strings) {
+        if (strings == null) {
+            dest.writeString(value);
+        } else {
+            strings.write(dest, value);
+        }
+    }
+
+    /**
+     * @param strings table of the bulk parcel or null to write the json as it is
+     */
+    static void writeJson(Parcel dest, String json, ParcelStringTable strings) {
+        if (strings == null) {
+            dest.writeString(json);
+        } else {
+            strings.writeJson(dest, json);
+        }
+    }
+
+    /**
+     * @param strings table of the bulk parcel or null to read a json written as it is
+     */
+    static String readJson(Parcel in, ParcelStringTable strings) {
+        return strings == null ? in.readString() : strings.readJson(in);
+    }
+
+    /**
+     * @param strings table of the bulk parcel or null to read a string written as it is
+     */
+    static String readString(Parcel in, ParcelStringTable strings) {
+        return strings == null ? in.readString() : strings.read(in);
+    }
+}
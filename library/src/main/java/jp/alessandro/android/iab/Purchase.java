@@ -18,17 +18,49 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.BadParcelableException;
 import android.os.Parcel;
 import android.os.Parcelable;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Locale;
+
 /**
  * Represents an in-app billing purchase.
  */
 public class Purchase implements Parcelable {
 
+    // Index of each field in JSON_FIELDS, used to get its value from JsonFieldReader
+    private static final int FIELD_ORDER_ID = 0;
+    private static final int FIELD_PACKAGE_NAME = 1;
+    private static final int FIELD_SKU = 2;
+    private static final int FIELD_PURCHASE_TIME = 3;
+    private static final int FIELD_PURCHASE_STATE = 4;
+    private static final int FIELD_DEVELOPER_PAYLOAD = 5;
+    private static final int FIELD_TOKEN = 6;
+    private static final int FIELD_PURCHASE_TOKEN = 7;
+    private static final int FIELD_AUTO_RENEWING = 8;
+
+    private static final String[] JSON_FIELDS = {
+            "orderId", "packageName", "productId", "purchaseTime", "purchaseState", "developerPayload",
+            "token", "purchaseToken", "autoRenewing"
+    };
+    private static final int[] JSON_FIELD_TYPES = {
+            JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_POOLED_STRING, JsonFieldReader.TYPE_STRING,
+            JsonFieldReader.TYPE_LONG, JsonFieldReader.TYPE_LONG, JsonFieldReader.TYPE_POOLED_STRING,
+            JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_BOOLEAN
+    };
+
+    // Parcel formats, written as the first byte of the parcel
+    // The fields are written one by one
+    private static final byte PARCEL_FORMAT_FIELDS = 0;
+    // Only the original json and the signature are written, the fields are read from the json when they are got
+    private static final byte PARCEL_FORMAT_JSON = 1;
+    // As PARCEL_FORMAT_JSON, but the purchase is kept in compact mode
+    private static final byte PARCEL_FORMAT_COMPACT_JSON = 2;
+
     private final String mOriginalJson;
     private final String mOrderId;
     private final String mPackageName;
@@ -39,10 +71,21 @@ public class Purchase implements Parcelable {
     private final String mToken;
     private final boolean mAutoRenewing;
     private final String mSignature;
+    // Not null if the fields are decoded from the original json when they are got
+    private final JsonFieldReader mFields;
+    // True if the fields were read from the original json by JsonFieldReader, so they can be read from it again
+    private final boolean mReadFromJson;
 
     public Purchase(String originalJson, String orderId, String packageName, String sku,
                     long purchaseTime, int purchaseState, String developerPayload, String token,
                     boolean autoRenewing, String signature) {
+        this(originalJson, orderId, packageName, sku, purchaseTime, purchaseState, developerPayload, token,
+                autoRenewing, signature, false);
+    }
+
+    private Purchase(String originalJson, String orderId, String packageName, String sku,
+                     long purchaseTime, int purchaseState, String developerPayload, String token,
+                     boolean autoRenewing, String signature, boolean readFromJson) {
         mOriginalJson = originalJson;
         mOrderId = orderId;
         mPackageName = packageName;
@@ -53,9 +96,76 @@ public class Purchase implements Parcelable {
         mToken = token;
         mAutoRenewing = autoRenewing;
         mSignature = signature;
+        mFields = null;
+        mReadFromJson = readFromJson;
+    }
+
+    private Purchase(JsonFieldReader fields, String signature) {
+        mOriginalJson = fields.getJson();
+        mOrderId = null;
+        mPackageName = null;
+        mSku = null;
+        mPurchaseTime = 0;
+        mPurchaseState = 0;
+        mDeveloperPayload = null;
+        mToken = null;
+        mAutoRenewing = false;
+        mSignature = signature;
+        mFields = fields;
+        mReadFromJson = true;
     }
 
     public static Purchase parseJson(String json, String signature) throws JSONException {
+        return parseJson(json, signature, (StringPool) null);
+    }
+
+    /**
+     * @param stringPool pool shared by the purchases of the same result, it may be null
+     */
+    static Purchase parseJson(String json, String signature, StringPool stringPool) throws JSONException {
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES);
+        reader.setStringPool(stringPool);
+        if (!reader.read()) {
+            return parseJsonObject(json, signature);
+        }
+        return new Purchase(
+                json,
+                reader.getString(FIELD_ORDER_ID),
+                reader.getString(FIELD_PACKAGE_NAME),
+                reader.getString(FIELD_SKU),
+                reader.getLong(FIELD_PURCHASE_TIME),
+                reader.getInt(FIELD_PURCHASE_STATE),
+                reader.getString(FIELD_DEVELOPER_PAYLOAD),
+                reader.has(FIELD_TOKEN) ? reader.getString(FIELD_TOKEN) : reader.getString(FIELD_PURCHASE_TOKEN),
+                reader.getBoolean(FIELD_AUTO_RENEWING),
+                signature,
+                true
+        );
+    }
+
+    /**
+     * The original json is always kept as it is, since the signature is verified against it
+     *
+     * @param stringPool pool shared by the purchases of the same result, it is not used by lazy and compact purchases
+     * @param lazy       true to keep only the offsets of the fields and decode each one when it is got for the first time
+     * @param compact    true to keep only the original json and the offsets, decoding the fields on every access
+     */
+    static Purchase parseJson(String json,
+                              String signature,
+                              StringPool stringPool,
+                              boolean lazy,
+                              boolean compact) throws JSONException {
+        if (!lazy && !compact) {
+            return parseJson(json, signature, stringPool);
+        }
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES, !compact);
+        return reader.read() ? new Purchase(reader, signature) : parseJsonObject(json, signature);
+    }
+
+    /**
+     * Parses the json with org.json, used when {@link JsonFieldReader} can not read it
+     */
+    static Purchase parseJsonObject(String json, String signature) throws JSONException {
         JSONObject obj = new JSONObject(json);
         return new Purchase(
                 json,
@@ -72,16 +182,43 @@ public class Purchase implements Parcelable {
     }
 
     protected Purchase(Parcel in) {
-        mOriginalJson = in.readString();
-        mOrderId = in.readString();
-        mPackageName = in.readString();
-        mSku = in.readString();
-        mPurchaseTime = in.readLong();
-        mPurchaseState = in.readInt();
-        mDeveloperPayload = in.readString();
-        mToken = in.readString();
-        mAutoRenewing = in.readByte() != 0;
+        this(in, null);
+    }
+
+    /**
+     * @param strings table shared by the purchases of a {@link Purchases} parcel, null for a single purchase
+     */
+    Purchase(Parcel in, ParcelStringTable strings) {
+        byte format = readParcelFormat(in);
+        boolean fields = format == PARCEL_FORMAT_FIELDS;
+        // The json is split in the string table, the signature is unique so it is never added to it
+        mOriginalJson = ParcelStringTable.readJson(in, strings);
+        mFields = fields ? null : readFields(mOriginalJson, format == PARCEL_FORMAT_JSON);
+        mOrderId = fields ? ParcelStringTable.readString(in, strings) : null;
+        mPackageName = fields ? ParcelStringTable.readString(in, strings) : null;
+        mSku = fields ? ParcelStringTable.readString(in, strings) : null;
+        mPurchaseTime = fields ? in.readLong() : 0;
+        mPurchaseState = fields ? in.readInt() : 0;
+        mDeveloperPayload = fields ? ParcelStringTable.readString(in, strings) : null;
+        mToken = fields ? ParcelStringTable.readString(in, strings) : null;
+        mAutoRenewing = fields && in.readByte() != 0;
         mSignature = in.readString();
+        mReadFromJson = !fields;
+    }
+
+    private static byte readParcelFormat(Parcel in) {
+        byte format = in.readByte();
+        if (format != PARCEL_FORMAT_FIELDS && format != PARCEL_FORMAT_JSON && format != PARCEL_FORMAT_COMPACT_JSON) {
+            throw new BadParcelableException(String.format(Locale.US, Constants.ERROR_MSG_UNKNOWN_PARCEL_FORMAT, format));
+        }
+        return format;
+    }
+
+    private static JsonFieldReader readFields(String json, boolean cacheValues) {
+        JsonFieldReader reader = new JsonFieldReader(json, JSON_FIELDS, JSON_FIELD_TYPES, cacheValues);
+        // The json format is only written if the json was already read by JsonFieldReader
+        reader.read();
+        return reader;
     }
 
     @Override
@@ -91,52 +228,74 @@ public class Purchase implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(mOriginalJson);
-        dest.writeString(mOrderId);
-        dest.writeString(mPackageName);
-        dest.writeString(mSku);
-        dest.writeLong(mPurchaseTime);
-        dest.writeInt(mPurchaseState);
-        dest.writeString(mDeveloperPayload);
-        dest.writeString(mToken);
-        dest.writeByte(mAutoRenewing ? (byte) 1 : (byte) 0);
+        writeToParcel(dest, (ParcelStringTable) null);
+    }
+
+    void writeToParcel(Parcel dest, ParcelStringTable strings) {
+        byte format = getParcelFormat();
+        dest.writeByte(format);
+        ParcelStringTable.writeJson(dest, mOriginalJson, strings);
+        if (format == PARCEL_FORMAT_FIELDS) {
+            ParcelStringTable.writeString(dest, getOrderId(), strings);
+            ParcelStringTable.writeString(dest, getPackageName(), strings);
+            ParcelStringTable.writeString(dest, getSku(), strings);
+            dest.writeLong(getPurchaseTime());
+            dest.writeInt(getPurchaseState());
+            ParcelStringTable.writeString(dest, getDeveloperPayload(), strings);
+            ParcelStringTable.writeString(dest, getToken(), strings);
+            dest.writeByte(isAutoRenewing() ? (byte) 1 : (byte) 0);
+        }
         dest.writeString(mSignature);
     }
 
+    /**
+     * The fields are written only if they can not be read from the original json,
+     * e.g. the purchase was created with the public constructor or the json was parsed by org.json
+     */
+    private byte getParcelFormat() {
+        if (mFields != null) {
+            return mFields.isCachingValues() ? PARCEL_FORMAT_JSON : PARCEL_FORMAT_COMPACT_JSON;
+        }
+        return mReadFromJson ? PARCEL_FORMAT_JSON : PARCEL_FORMAT_FIELDS;
+    }
+
     public String getOriginalJson() {
         return mOriginalJson;
     }
 
     public String getOrderId() {
-        return mOrderId;
+        return mFields == null ? mOrderId : mFields.getString(FIELD_ORDER_ID);
     }
 
     public String getPackageName() {
-        return mPackageName;
+        return mFields == null ? mPackageName : mFields.getString(FIELD_PACKAGE_NAME);
     }
 
     public String getSku() {
-        return mSku;
+        return mFields == null ? mSku : mFields.getString(FIELD_SKU);
     }
 
     public long getPurchaseTime() {
-        return mPurchaseTime;
+        return mFields == null ? mPurchaseTime : mFields.getLong(FIELD_PURCHASE_TIME);
     }
 
     public int getPurchaseState() {
-        return mPurchaseState;
+        return mFields == null ? mPurchaseState : mFields.getInt(FIELD_PURCHASE_STATE);
     }
 
     public String getDeveloperPayload() {
-        return mDeveloperPayload;
+        return mFields == null ? mDeveloperPayload : mFields.getString(FIELD_DEVELOPER_PAYLOAD);
     }
 
     public String getToken() {
-        return mToken;
+        if (mFields == null) {
+            return mToken;
+        }
+        return mFields.has(FIELD_TOKEN) ? mFields.getString(FIELD_TOKEN) : mFields.getString(FIELD_PURCHASE_TOKEN);
     }
 
     public boolean isAutoRenewing() {
-        return mAutoRenewing;
+        return mFields == null ? mAutoRenewing : mFields.getBoolean(FIELD_AUTO_RENEWING);
     }
 
     public String getSignature() {
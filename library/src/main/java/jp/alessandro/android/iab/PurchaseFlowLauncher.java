@@ -29,6 +29,7 @@ import com.android.vending.billing.IInAppBillingService;
 
 import org.json.JSONException;
 
+import java.security.PublicKey;
 import java.util.List;
 import java.util.Locale;
 
@@ -37,7 +38,7 @@ import jp.alessandro.android.iab.logger.Logger;
 public class PurchaseFlowLauncher {
 
     private final String mItemType;
-    private final String mPublicKeyBase64;
+    private final PublicKey mPublicKey;
     private final int mApiVersion;
     private final String mPackageName;
     private final Logger mLogger;
@@ -47,7 +48,7 @@ public class PurchaseFlowLauncher {
 
     PurchaseFlowLauncher(BillingContext context, String itemType) {
         mItemType = itemType;
-        mPublicKeyBase64 = context.getPublicKeyBase64();
+        mPublicKey = context.getPublicKey();
         mApiVersion = context.getApiVersion();
         mPackageName = context.getContext().getPackageName();
         mLogger = context.getLogger();
@@ -162,7 +163,7 @@ public class PurchaseFlowLauncher {
             throw new BillingException(Constants.ERROR_PURCHASE_DATA,
                     Constants.ERROR_MSG_NULL_PURCHASE_DATA);
         }
-        if (!mSecurity.verifyPurchase(mLogger, mPublicKeyBase64, purchaseData, signature)) {
+        if (!mSecurity.verifyPurchase(mLogger, mPublicKey, purchaseData, signature)) {
             throw new BillingException(Constants.ERROR_VERIFICATION_FAILED,
                     Constants.ERROR_MSG_VERIFICATION_FAILED);
         }
@@ -182,4 +183,8 @@ public class PurchaseFlowLauncher {
         mLogger.i(Logger.TAG, String.format("Data signature: %s", dataSignature));
         mLogger.i(Logger.TAG, "------------- BILLING RESPONSE end -------------");
     }
-}
\ No newline at end of file
+
+    String getItemType() {
+        return mItemType;
+    }
+}
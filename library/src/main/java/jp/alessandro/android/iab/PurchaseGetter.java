@@ -26,24 +26,37 @@ import com.android.vending.billing.IInAppBillingService;
 
 import org.json.JSONException;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import jp.alessandro.android.iab.logger.Logger;
 
 class PurchaseGetter {
 
-    private final String mPublicKeyBase64;
     private final int mApiVersion;
     private final String mPackageName;
     private final Logger mLogger;
-    private final Security mSecurity;
+    private final boolean mLazyJsonParsing;
+    private final boolean mCompactMode;
+    private final PurchaseVerifier mVerifier;
+    private final boolean mDropInvalidPurchases;
+    private final Executor mExecutor;
+    private final EntitlementStore mEntitlementStore;
 
     PurchaseGetter(BillingContext context) {
-        mPublicKeyBase64 = context.getPublicKeyBase64();
         mApiVersion = context.getApiVersion();
         mPackageName = context.getContext().getPackageName();
         mLogger = context.getLogger();
-        mSecurity = new Security(BuildConfig.DEBUG);
+        mLazyJsonParsing = context.isLazyJsonParsingEnabled();
+        mCompactMode = context.isCompactModeEnabled();
+        mVerifier = new PurchaseVerifier(context);
+        mDropInvalidPurchases = context.shouldDropInvalidPurchases();
+        mExecutor = context.getVerificationExecutor();
+        mEntitlementStore = context.getEntitlementStore();
     }
 
     /**
@@ -59,16 +72,84 @@ class PurchaseGetter {
      * @throws BillingException
      */
     public Purchases get(IInAppBillingService service, String itemType) throws BillingException {
+        Purchases purchases = mExecutor == null
+                ? getPages(service, itemType)
+                : getPagesPipelined(service, itemType);
+
+        if (mEntitlementStore != null && mEntitlementStore.reconcile(itemType, purchases)) {
+            mEntitlementStore.save();
+        }
+        return purchases;
+    }
+
+    private Purchases getPages(IInAppBillingService service, String itemType) throws BillingException {
         Purchases purchases = new Purchases();
+        StringPool stringPool = new StringPool();
         String continueToken = null;
         do {
             Bundle bundle = getPurchasesBundle(service, itemType, continueToken);
-            checkResponseAndAddPurchases(bundle, purchases);
+            checkResponseAndAddPurchases(bundle, purchases, stringPool);
             continueToken = bundle.getString(Constants.RESPONSE_INAPP_CONTINUATION_TOKEN);
         } while (!TextUtils.isEmpty(continueToken));
+
+        return purchases;
+    }
+
+    /**
+     * Requests the next page while the previous ones are verified and parsed in the executor
+     * The pages are merged in order and the first error is thrown, as in {@link PurchaseGetter#getPages}
+     */
+    private Purchases getPagesPipelined(IInAppBillingService service, String itemType) throws BillingException {
+        List<PageTask> pages = new ArrayList<>();
+        StringPool stringPool = new StringPool();
+        String continueToken = null;
+        try {
+            do {
+                Bundle bundle = getPurchasesBundle(service, itemType, continueToken);
+                PageTask page = new PageTask(bundle, stringPool);
+                pages.add(page);
+                execute(page);
+                continueToken = bundle == null ? null : bundle.getString(Constants.RESPONSE_INAPP_CONTINUATION_TOKEN);
+            } while (!TextUtils.isEmpty(continueToken));
+        } catch (BillingException e) {
+            throw getFinishedPageException(pages, e);
+        }
+        return mergePages(pages);
+    }
+
+    /**
+     * An error in a previous page would have been thrown first, so the pages that are already finished are checked
+     * The pages still being verified are not waited for, their result would be dropped anyway
+     */
+    private BillingException getFinishedPageException(List<PageTask> pages, BillingException exception) {
+        for (PageTask page : pages) {
+            BillingException pageException = page.getExceptionIfFinished();
+            if (pageException != null) {
+                return pageException;
+            }
+        }
+        return exception;
+    }
+
+    private Purchases mergePages(List<PageTask> pages) throws BillingException {
+        Purchases purchases = new Purchases();
+        for (PageTask page : pages) {
+            for (Purchase purchase : page.await().getAll()) {
+                purchases.put(purchase);
+            }
+        }
         return purchases;
     }
 
+    private void execute(Runnable task) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mLogger.w(Logger.TAG, e.getMessage());
+            task.run();
+        }
+    }
+
     private Bundle getPurchasesBundle(IInAppBillingService service,
                                       String itemType,
                                       String continueToken) throws BillingException {
@@ -79,7 +160,9 @@ class PurchaseGetter {
         }
     }
 
-    private void checkResponseAndAddPurchases(Bundle bundle, Purchases purchases) throws BillingException {
+    private void checkResponseAndAddPurchases(Bundle bundle,
+                                              Purchases purchases,
+                                              StringPool stringPool) throws BillingException {
         int response = ResponseExtractor.fromBundle(bundle, mLogger);
 
         if (response != Constants.BILLING_RESPONSE_RESULT_OK) {
@@ -93,7 +176,7 @@ class PurchaseGetter {
             throw new BillingException(
                     Constants.ERROR_PURCHASE_DATA, Constants.ERROR_MSG_GET_PURCHASES_DIFFERENT_SIZE);
         }
-        addAllPurchases(purchaseList, signatureList, purchases);
+        addAllPurchases(purchaseList, signatureList, purchases, stringPool);
     }
 
     private List<String> extractPurchaseList(Bundle bundle) throws BillingException {
@@ -118,39 +201,33 @@ class PurchaseGetter {
 
     private void addAllPurchases(List<String> purchaseList,
                                  List<String> signatureList,
-                                 Purchases purchases) throws BillingException {
+                                 Purchases purchases,
+                                 StringPool stringPool) throws BillingException {
+        boolean[] verified = mVerifier.verifyAll(purchaseList, signatureList);
         int errors = 0;
-        for (int i = 0; i < purchaseList.size(); i++) {
+        for (int i = 0; i < verified.length; i++) {
             String purchaseData = purchaseList.get(i);
             String signature = signatureList.get(i);
-            if (!verifyBeforeAddPurchase(purchaseData, signature, purchases)) {
+            if (verified[i]) {
+                addPurchase(purchaseData, signature, purchases, stringPool);
+            } else {
+                printPurchaseVerificationFailed(purchaseData, signature);
                 errors++;
             }
         }
-        if (errors > 0) {
+        if (errors > 0 && !mDropInvalidPurchases) {
             throw new BillingException(
                     Constants.ERROR_PURCHASE_DATA, Constants.ERROR_MSG_GET_PURCHASE_VERIFICATION_FAILED);
         }
     }
 
-    private boolean verifyBeforeAddPurchase(String purchaseData,
-                                            String signature,
-                                            Purchases purchases) throws BillingException {
-
-        if (mSecurity.verifyPurchase(mLogger, mPublicKeyBase64, purchaseData, signature)) {
-            addPurchase(purchaseData, signature, purchases);
-            return true;
-        }
-        printPurchaseVerificationFailed(purchaseData, signature);
-        return false;
-    }
-
     private void addPurchase(String purchaseData,
                              String signature,
-                             Purchases purchases) throws BillingException {
+                             Purchases purchases,
+                             StringPool stringPool) throws BillingException {
         Purchase purchase;
         try {
-            purchase = Purchase.parseJson(purchaseData, signature);
+            purchase = Purchase.parseJson(purchaseData, signature, stringPool, mLazyJsonParsing, mCompactMode);
         } catch (JSONException e) {
             mLogger.e(Logger.TAG, e.getMessage(), e);
             throw new BillingException(Constants.ERROR_BAD_RESPONSE, Constants.ERROR_MSG_BAD_RESPONSE);
@@ -165,4 +242,60 @@ class PurchaseGetter {
         mLogger.e(Logger.TAG, String.format("Data signature: %s", dataSignature));
         mLogger.e(Logger.TAG, "------------- BILLING GET PURCHASES end -------------");
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifies and parses one page of purchases
+     * It runs only once, in the executor or in the thread that awaits it if it has not started yet,
+     * so a page is never waited for when the executor is busy with the caller or discarded it
+     */
+    private class PageTask implements Runnable {
+
+        private final Bundle mBundle;
+        private final StringPool mStringPool;
+        private final Purchases mPurchases = new Purchases();
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private final AtomicBoolean mStarted = new AtomicBoolean();
+
+        private BillingException mException;
+
+        PageTask(Bundle bundle, StringPool stringPool) {
+            mBundle = bundle;
+            mStringPool = stringPool;
+        }
+
+        @Override
+        public void run() {
+            if (!mStarted.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                checkResponseAndAddPurchases(mBundle, mPurchases, mStringPool);
+            } catch (BillingException e) {
+                mException = e;
+            } finally {
+                mLatch.countDown();
+            }
+        }
+
+        /**
+         * @return the exception if it already finished with an error, it does not wait
+         */
+        BillingException getExceptionIfFinished() {
+            return mLatch.getCount() == 0 ? mException : null;
+        }
+
+        Purchases await() throws BillingException {
+            run();
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BillingException(Constants.ERROR_INTERRUPTED, Constants.ERROR_MSG_VERIFICATION_INTERRUPTED);
+            }
+            if (mException != null) {
+                throw mException;
+            }
+            return mPurchases;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.text.TextUtils;
+
+import java.security.PublicKey;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.alessandro.android.iab.logger.Logger;
+
+/**
+ * Verifies the signatures of the purchases returned by getPurchases
+ * <p>
+ * If an executor was given in {@link BillingContext.Builder#setVerificationExecutor(java.util.concurrent.Executor)}
+ * the purchases are verified in parallel by the calling thread and up to one task per core in the executor.
+ * The results are always returned in the same order as the purchases.
+ */
+class PurchaseVerifier {
+
+    private final PublicKey mPublicKey;
+    private final Logger mLogger;
+    private final Security mSecurity;
+    private final VerifiedPurchaseCache mVerifiedPurchaseCache;
+    private final Executor mExecutor;
+
+    PurchaseVerifier(BillingContext context) {
+        mPublicKey = context.getPublicKey();
+        mLogger = context.getLogger();
+        mSecurity = new Security(BuildConfig.DEBUG);
+        mVerifiedPurchaseCache = context.getVerifiedPurchaseCache();
+        mExecutor = context.getVerificationExecutor();
+    }
+
+    /**
+     * @param purchaseList  purchase data returned by the service
+     * @param signatureList signatures of the purchase data, it must have the same size
+     * @return the verification result of each purchase, in the same order
+     * @throws BillingException if the thread was interrupted while waiting for the parallel verification
+     */
+    boolean[] verifyAll(List<String> purchaseList, List<String> signatureList) throws BillingException {
+        int size = purchaseList.size();
+        boolean[] results = new boolean[size];
+        int tasks = mExecutor == null ? 1 : Math.min(size, Runtime.getRuntime().availableProcessors());
+
+        VerifyTask task = new VerifyTask(purchaseList, signatureList, results);
+        for (int i = 1; i < tasks; i++) {
+            execute(task);
+        }
+        // The calling thread also verifies, so it finishes even if the executor is busy
+        task.run();
+        task.await();
+        return results;
+    }
+
+    boolean verify(String purchaseData, String signature) {
+        if (mVerifiedPurchaseCache == null || TextUtils.isEmpty(purchaseData) || TextUtils.isEmpty(signature)) {
+            return mSecurity.verifyPurchase(mLogger, mPublicKey, purchaseData, signature);
+        }
+        if (mVerifiedPurchaseCache.contains(purchaseData, signature)) {
+            return true;
+        }
+        if (mSecurity.verifyPurchase(mLogger, mPublicKey, purchaseData, signature)) {
+            mVerifiedPurchaseCache.put(purchaseData, signature);
+            return true;
+        }
+        return false;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mLogger.w(Logger.TAG, e.getMessage());
+            task.run();
+        }
+    }
+
+    /**
+     * Task shared by all the threads, each one takes the next purchase until there is none left
+     * Since the calling thread also runs it, it can be nested in a task of the same executor without deadlocks
+     */
+    private class VerifyTask implements Runnable {
+
+        private final List<String> mPurchaseList;
+        private final List<String> mSignatureList;
+        private final boolean[] mResults;
+        private final AtomicInteger mNextIndex = new AtomicInteger();
+        private final CountDownLatch mLatch;
+
+        VerifyTask(List<String> purchaseList, List<String> signatureList, boolean[] results) {
+            mPurchaseList = purchaseList;
+            mSignatureList = signatureList;
+            mResults = results;
+            // Counts the purchases, not the tasks, so the tasks still queued in a busy executor are not awaited
+            mLatch = new CountDownLatch(results.length);
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = mNextIndex.getAndIncrement()) < mResults.length) {
+                try {
+                    mResults[index] = verify(mPurchaseList.get(index), mSignatureList.get(index));
+                } finally {
+                    mLatch.countDown();
+                }
+            }
+        }
+
+        void await() throws BillingException {
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BillingException(Constants.ERROR_INTERRUPTED, Constants.ERROR_MSG_VERIFICATION_INTERRUPTED);
+            }
+        }
+    }
+}
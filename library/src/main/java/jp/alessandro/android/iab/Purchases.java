@@ -18,35 +18,144 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Purchases {
+public class Purchases implements Parcelable {
 
     private final Map<String, Purchase> mMap = new LinkedHashMap<>();
 
+    // Read-only copy of the values, built once and shared by every call until the next put
+    private volatile List<Purchase> mAll;
+    // Built on the first lookup by token, order id, state or time
+    private volatile PurchasesIndex mIndex;
+
     public Purchases() {
     }
 
+    protected Purchases(Parcel in) {
+        int size = in.readInt();
+        ParcelStringTable strings = new ParcelStringTable();
+        for (int i = 0; i < size; i++) {
+            put(new Purchase(in, strings));
+        }
+    }
+
     public boolean hasItemId(String itemId) {
         return mMap.containsKey(itemId);
     }
 
+    /**
+     * The returned list is read-only and it is shared between calls,
+     * so it can be called on every bind without allocating a new list
+     *
+     * @return all the purchases in the order they were added
+     */
     public List<Purchase> getAll() {
-        return new ArrayList<>(mMap.values());
+        List<Purchase> all = mAll;
+        if (all == null) {
+            all = Collections.unmodifiableList(new ArrayList<>(mMap.values()));
+            mAll = all;
+        }
+        return all;
+    }
+
+    /**
+     * @param index position in {@link Purchases#getAll()}
+     * @return the purchase at the given position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Purchase get(int index) {
+        return getAll().get(index);
     }
 
     public Purchase getByPurchaseId(String itemId) {
         return mMap.get(itemId);
     }
 
+    /**
+     * @param token the purchase token, as sent by Google Play to your server
+     * @return the purchase with the given token or null if there is none
+     */
+    public Purchase getByToken(String token) {
+        return getIndex().getByToken(token);
+    }
+
+    /**
+     * @param orderId the order id of the purchase
+     * @return the purchase with the given order id or null if there is none
+     */
+    public Purchase getByOrderId(String orderId) {
+        return getIndex().getByOrderId(orderId);
+    }
+
+    /**
+     * @param purchaseState 0 (purchased), 1 (canceled) or 2 (refunded)
+     * @return a read-only list of the purchases in the given state
+     */
+    public List<Purchase> getByPurchaseState(int purchaseState) {
+        return getIndex().getByState(purchaseState);
+    }
+
+    /**
+     * @param fromTime inclusive, in milliseconds since the epoch
+     * @param toTime   exclusive, in milliseconds since the epoch
+     * @return a read-only list of the purchases made in the range, sorted by purchase time
+     */
+    public List<Purchase> getByPurchaseTime(long fromTime, long toTime) {
+        return getIndex().getByTime(fromTime, toTime);
+    }
+
     public int getSize() {
         return mMap.size();
     }
 
     void put(Purchase purchase) {
         mMap.put(purchase.getSku(), purchase);
+        mAll = null;
+        mIndex = null;
     }
-}
\ No newline at end of file
+
+    private PurchasesIndex getIndex() {
+        PurchasesIndex index = mIndex;
+        if (index == null) {
+            index = new PurchasesIndex(getAll());
+            mIndex = index;
+        }
+        return index;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * The strings repeated by the purchases are written only once
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        List<Purchase> all = getAll();
+        dest.writeInt(all.size());
+        ParcelStringTable strings = new ParcelStringTable();
+        for (Purchase purchase : all) {
+            purchase.writeToParcel(dest, strings);
+        }
+    }
+
+    public static final Creator<Purchases> CREATOR = new Creator<Purchases>() {
+        public Purchases createFromParcel(Parcel source) {
+            return new Purchases(source);
+        }
+
+        public Purchases[] newArray(int size) {
+            return new Purchases[size];
+        }
+    };
+}
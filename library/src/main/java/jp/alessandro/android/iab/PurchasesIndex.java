@@ -0,0 +1,132 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup tables of {@link Purchases} by token, order id, state and purchase time
+ * They are built once from a fixed list of purchases and they are never modified
+ */
+class PurchasesIndex {
+
+    private final Map<String, Purchase> mByToken;
+    private final Map<String, Purchase> mByOrderId;
+    private final Map<Integer, List<Purchase>> mByState;
+    private final Purchase[] mByTime;
+    private final long[] mTimes;
+
+    PurchasesIndex(List<Purchase> purchases) {
+        int size = purchases.size();
+        mByToken = new HashMap<>(size * 2);
+        mByOrderId = new HashMap<>(size * 2);
+        Map<Integer, List<Purchase>> byState = new HashMap<>();
+        for (Purchase purchase : purchases) {
+            putIfNotEmpty(mByToken, purchase.getToken(), purchase);
+            putIfNotEmpty(mByOrderId, purchase.getOrderId(), purchase);
+            List<Purchase> list = byState.get(purchase.getPurchaseState());
+            if (list == null) {
+                list = new ArrayList<>();
+                byState.put(purchase.getPurchaseState(), list);
+            }
+            list.add(purchase);
+        }
+        for (Map.Entry<Integer, List<Purchase>> entry : byState.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        mByState = byState;
+        mByTime = sortByTime(purchases);
+        mTimes = new long[size];
+        for (int i = 0; i < size; i++) {
+            mTimes[i] = mByTime[i].getPurchaseTime();
+        }
+    }
+
+    Purchase getByToken(String token) {
+        return mByToken.get(token);
+    }
+
+    Purchase getByOrderId(String orderId) {
+        return mByOrderId.get(orderId);
+    }
+
+    List<Purchase> getByState(int purchaseState) {
+        List<Purchase> list = mByState.get(purchaseState);
+        return list == null ? Collections.<Purchase>emptyList() : list;
+    }
+
+    /**
+     * @param fromTime inclusive, in milliseconds since the epoch
+     * @param toTime   exclusive, in milliseconds since the epoch
+     * @return the purchases in the range sorted by purchase time
+     */
+    List<Purchase> getByTime(long fromTime, long toTime) {
+        if (fromTime >= toTime) {
+            return Collections.emptyList();
+        }
+        int from = lowerBound(fromTime);
+        int to = lowerBound(toTime);
+        return Collections.unmodifiableList(Arrays.asList(mByTime).subList(from, to));
+    }
+
+    /**
+     * @return the first position whose time is equal or greater than the given time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = mTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimes[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Purchase[] sortByTime(List<Purchase> purchases) {
+        Purchase[] sorted = purchases.toArray(new Purchase[purchases.size()]);
+        // The sort is stable, purchases with the same time keep their order
+        Arrays.sort(sorted, new Comparator<Purchase>() {
+            @Override
+            public int compare(Purchase a, Purchase b) {
+                long timeA = a.getPurchaseTime();
+                long timeB = b.getPurchaseTime();
+                return timeA < timeB ? -1 : (timeA == timeB ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    private static void putIfNotEmpty(Map<String, Purchase> map, String key, Purchase purchase) {
+        if (!TextUtils.isEmpty(key) && !map.containsKey(key)) {
+            map.put(key, purchase);
+        }
+    }
+}
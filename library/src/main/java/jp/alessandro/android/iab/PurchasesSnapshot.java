@@ -0,0 +1,60 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Last loaded purchases of each type, kept until an event that may change them
+ * <p>
+ * Every invalidation increases the generation, so a load started before it
+ * cannot store purchases that may already be outdated.
+ */
+class PurchasesSnapshot {
+
+    private final Map<PurchaseType, Purchases> mPurchases = new EnumMap<>(PurchaseType.class);
+
+    private int mGeneration;
+
+    synchronized Purchases get(PurchaseType purchaseType) {
+        return mPurchases.get(purchaseType);
+    }
+
+    /**
+     * @return the generation to be given to {@link PurchasesSnapshot#put(PurchaseType, Purchases, int)}
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores the purchases only if there was no invalidation since the given generation
+     */
+    synchronized void put(PurchaseType purchaseType, Purchases purchases, int generation) {
+        if (generation == mGeneration) {
+            mPurchases.put(purchaseType, purchases);
+        }
+    }
+
+    synchronized void invalidate() {
+        mGeneration++;
+        mPurchases.clear();
+    }
+}
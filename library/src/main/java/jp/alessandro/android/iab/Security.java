@@ -47,6 +47,8 @@ class Security {
     static final String KEY_FACTORY_ALGORITHM = "RSA";
     static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
 
+    private static final ThreadLocal<SignatureVerifier> sVerifiers = new ThreadLocal<>();
+
     private final boolean mIsDebug;
 
     public Security(boolean isDebug) {
@@ -71,12 +73,7 @@ class Security {
     public boolean verifyPurchase(Logger logger, String base64PublicKey, String signedData, String signature) {
 
         if (TextUtils.isEmpty(base64PublicKey) || TextUtils.isEmpty(signedData) || TextUtils.isEmpty(signature)) {
-            // In case of tests it will return true because test purchases doesn't have a signature
-            if (mIsDebug && !TextUtils.isEmpty(signedData) && TextUtils.isEmpty(signature)) {
-                return isTestingStaticResponse(logger, signedData);
-            }
-            logger.e(Logger.TAG, "Purchase verification failed: missing data.");
-            return false;
+            return verifyMissingData(logger, signedData, signature);
         }
 
         try {
@@ -99,6 +96,57 @@ class Security {
         return false;
     }
 
+    /**
+     * Same as {@link Security#verifyPurchase(Logger, String, String, String)}
+     * but with the public key already decoded, so it is not parsed again for every purchase
+     * The {@link Signature} is initialized once per thread and reused while the key is the same
+     *
+     * @param logger     the logger to use for printing events
+     * @param publicKey  rsa public key decoded by {@link Security#decodePublicKey(String)}
+     * @param signedData the signed JSON string (signed, not encrypted)
+     * @param signature  the signature for the data, signed with the private key
+     */
+    public boolean verifyPurchase(Logger logger, PublicKey publicKey, String signedData, String signature) {
+
+        if (publicKey == null || TextUtils.isEmpty(signedData) || TextUtils.isEmpty(signature)) {
+            return verifyMissingData(logger, signedData, signature);
+        }
+
+        try {
+            if (!getVerifier(publicKey).verify(signedData, signature)) {
+                logger.e(Logger.TAG, "Signature verification failed.");
+                return false;
+            }
+            return true;
+
+        } catch (NoSuchAlgorithmException e) {
+            logger.e(Logger.TAG, e.getMessage(), e);
+        } catch (InvalidKeyException e) {
+            logger.e(Logger.TAG, e.getMessage(), e);
+        } catch (SignatureException e) {
+            logger.e(Logger.TAG, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            logger.e(Logger.TAG, e.getMessage(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the public key once, to be used in {@link Security#verifyPurchase(Logger, PublicKey, String, String)}
+     *
+     * @param encodedPublicKey rsa public key generated by Google Play Developer Console
+     * @throws IllegalArgumentException if encodedPublicKey is invalid
+     */
+    static PublicKey decodePublicKey(String encodedPublicKey) {
+        try {
+            return new Security(false).generatePublicKey(encodedPublicKey);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_INVALID_PUBLIC_KEY, e);
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_INVALID_PUBLIC_KEY, e);
+        }
+    }
+
     /**
      * Generates a PublicKey instance from a string containing the
      * Base64-encoded public key.
@@ -144,6 +192,24 @@ class Security {
         return true;
     }
 
+    private static SignatureVerifier getVerifier(PublicKey publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
+        SignatureVerifier verifier = sVerifiers.get();
+        if (verifier == null || !verifier.isFor(publicKey)) {
+            verifier = new SignatureVerifier(publicKey);
+            sVerifiers.set(verifier);
+        }
+        return verifier;
+    }
+
+    private boolean verifyMissingData(Logger logger, String signedData, String signature) {
+        // In case of tests it will return true because test purchases doesn't have a signature
+        if (mIsDebug && !TextUtils.isEmpty(signedData) && TextUtils.isEmpty(signature)) {
+            return isTestingStaticResponse(logger, signedData);
+        }
+        logger.e(Logger.TAG, "Purchase verification failed: missing data.");
+        return false;
+    }
+
     /**
      * In case of tests it will return true because test purchases doesn't have a signature
      * See https://developer.android.com/google/play/billing/billing_testing.html
@@ -22,12 +22,19 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.os.Message;
 
 import com.android.vending.billing.IInAppBillingService;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import jp.alessandro.android.iab.logger.Logger;
 
-class ServiceBinder implements ServiceConnection {
+class ServiceBinder implements ServiceConnection, android.os.Handler.Callback {
+
+    private static final int MSG_BIND = 1;
+    private static final int MSG_ERROR = 2;
 
     public interface Handler {
 
@@ -39,15 +46,15 @@ class ServiceBinder implements ServiceConnection {
     private final Context mContext;
     private final Intent mIntent;
     private final Logger mLogger;
-    private final android.os.Handler mEventHandler;
 
+    private android.os.Handler mEventHandler;
     private Handler mHandler;
+    private volatile Handler mResultHandler;
 
     public ServiceBinder(BillingContext context, Intent intent) {
         mContext = context.getContext();
         mIntent = intent;
         mLogger = context.getLogger();
-        mEventHandler = new android.os.Handler();
     }
 
     public void unbindService() {
@@ -55,10 +62,45 @@ class ServiceBinder implements ServiceConnection {
         mContext.unbindService(this);
     }
 
+    /**
+     * Binds the service and delivers it on the thread calling this method
+     * The calling thread MUST have a Looper
+     */
     public void getServiceAsync(Handler handler) {
+        mEventHandler = new android.os.Handler(this);
         bindService(handler);
     }
 
+    /**
+     * Binds the service and blocks the calling thread until it is connected
+     * It MUST NOT be called from the main thread since the connection is delivered there
+     *
+     * @param timeoutMillis maximum time to wait for the connection
+     * @return the connected service, it MUST be released calling {@link ServiceBinder#unbindService()}
+     * @throws BillingException if the service could not be bound in time, the connection is already released
+     */
+    public IInAppBillingService getService(long timeoutMillis) throws BillingException {
+        ServiceWaiter waiter = new ServiceWaiter();
+        bindService(waiter);
+        try {
+            return waiter.await(timeoutMillis);
+        } catch (BillingException e) {
+            // Gives up on the connection, it can be registered even if it failed or was not connected
+            takeHandler();
+            unbindServiceQuietly();
+            throw e;
+        }
+    }
+
+    private void unbindServiceQuietly() {
+        try {
+            mContext.unbindService(this);
+        } catch (IllegalArgumentException e) {
+            // It was never registered
+            mLogger.d(Logger.TAG, e.getMessage());
+        }
+    }
+
     @Override
     public void onServiceConnected(ComponentName name, android.os.IBinder binder) {
         setBinder(binder);
@@ -71,8 +113,7 @@ class ServiceBinder implements ServiceConnection {
 
     private void setBinder(android.os.IBinder binder) {
         IInAppBillingService service = IInAppBillingService.Stub.asInterface(binder);
-        Handler handler = mHandler;
-        mHandler = null;
+        Handler handler = takeHandler();
 
         if (handler == null) {
             return;
@@ -88,12 +129,20 @@ class ServiceBinder implements ServiceConnection {
         }
     }
 
+    private synchronized Handler takeHandler() {
+        Handler handler = mHandler;
+        mHandler = null;
+        return handler;
+    }
+
     private void bindService(Handler handler) {
-        mHandler = handler;
+        synchronized (this) {
+            mHandler = handler;
+        }
         try {
             boolean bound = mContext.bindService(mIntent, this, Context.BIND_AUTO_CREATE);
             if (!bound) {
-                mHandler = null;
+                takeHandler();
                 BillingException e = new BillingException(
                         Constants.ERROR_BIND_SERVICE_FAILED_EXCEPTION,
                         Constants.ERROR_MSG_BIND_SERVICE_FAILED);
@@ -129,25 +178,77 @@ class ServiceBinder implements ServiceConnection {
         postBinderError(e, handler);
     }
 
-    private void postBinder(final IInAppBillingService service, final Handler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onBind(service);
-            }
-        });
+    private void postBinder(IInAppBillingService service, Handler handler) {
+        if (mEventHandler == null) {
+            // Synchronous binding, the waiting thread is notified directly
+            handler.onBind(service);
+        } else {
+            mResultHandler = handler;
+            mEventHandler.obtainMessage(MSG_BIND, service).sendToTarget();
+        }
     }
 
-    private void postBinderError(final BillingException exception, final Handler handler) {
-        postEventHandler(new Runnable() {
-            @Override
-            public void run() {
-                handler.onError(exception);
-            }
-        });
+    private void postBinderError(BillingException exception, Handler handler) {
+        if (mEventHandler == null) {
+            handler.onError(exception);
+        } else {
+            mResultHandler = handler;
+            mEventHandler.obtainMessage(MSG_ERROR, exception).sendToTarget();
+        }
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        Handler handler = mResultHandler;
+        mResultHandler = null;
+
+        if (handler == null) {
+            return true;
+        }
+        if (msg.what == MSG_BIND) {
+            handler.onBind((IInAppBillingService) msg.obj);
+        } else {
+            handler.onError((BillingException) msg.obj);
+        }
+        return true;
     }
 
-    private void postEventHandler(Runnable r) {
-        mEventHandler.post(r);
+    /**
+     * Handler that blocks the waiting thread until the service is connected
+     */
+    private static class ServiceWaiter implements Handler {
+
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        private IInAppBillingService mService;
+        private BillingException mException;
+
+        @Override
+        public void onBind(IInAppBillingService service) {
+            mService = service;
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onError(BillingException exception) {
+            mException = exception;
+            mLatch.countDown();
+        }
+
+        IInAppBillingService await(long timeoutMillis) throws BillingException {
+            try {
+                if (!mLatch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new BillingException(Constants.ERROR_BIND_SERVICE_TIMEOUT,
+                            Constants.ERROR_MSG_BIND_SERVICE_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BillingException(Constants.ERROR_INTERRUPTED, Constants.ERROR_MSG_INTERRUPTED);
+            }
+            if (mException != null) {
+                throw mException;
+            }
+            return mService;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.util.Base64;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Verifies signatures with a {@link Signature} that is looked up and initialized only once
+ * The signed data is encoded into a buffer that is reused between calls
+ * It is NOT thread-safe, each thread must use its own instance
+ */
+class SignatureVerifier {
+
+    private final PublicKey mPublicKey;
+    private final Signature mSignature;
+    private final CharsetEncoder mEncoder;
+
+    private ByteBuffer mDataBuffer;
+
+    SignatureVerifier(PublicKey publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
+        mPublicKey = publicKey;
+        mSignature = Signature.getInstance(Security.SIGNATURE_ALGORITHM);
+        mSignature.initVerify(publicKey);
+        // Same replacement as String.getBytes for malformed input
+        mEncoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    boolean isFor(PublicKey publicKey) {
+        return mPublicKey == publicKey;
+    }
+
+    /**
+     * Verifies that the signature matches the signed data
+     *
+     * @param signedData signed data from server
+     * @param signature  server signature encoded in Base64
+     * @return true if the data and signature match
+     * @throws IllegalArgumentException if the signature is not valid Base64
+     */
+    boolean verify(String signedData, String signature) throws SignatureException, InvalidKeyException {
+        byte[] signatureBytes = Base64.decode(signature, Base64.DEFAULT);
+        try {
+            mSignature.update(encodeData(signedData));
+            return mSignature.verify(signatureBytes);
+        } catch (SignatureException e) {
+            // The state is unknown after a failure, start again from the initialized state
+            mSignature.initVerify(mPublicKey);
+            throw e;
+        }
+    }
+
+    private ByteBuffer encodeData(String data) {
+        int maxLength = (int) Math.ceil(data.length() * (double) mEncoder.maxBytesPerChar());
+        if (mDataBuffer == null || mDataBuffer.capacity() < maxLength) {
+            mDataBuffer = ByteBuffer.allocate(maxLength);
+        }
+        mDataBuffer.clear();
+        mEncoder.reset();
+        mEncoder.encode(CharBuffer.wrap(data), mDataBuffer, true);
+        mEncoder.flush(mDataBuffer);
+        mDataBuffer.flip();
+        return mDataBuffer;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+/**
+ * Pool of strings used while parsing one result, so the values repeated in many items or purchases
+ * (e.g. type, currency or package name) share the same instance
+ * <p>
+ * The values are looked up by region of the source string, so a value already in the pool is not allocated again.
+ */
+class StringPool {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private String[] mTable = new String[INITIAL_CAPACITY];
+    private int mSize;
+
+    /**
+     * @return the pooled string equal to source.substring(start, end)
+     */
+    synchronized String get(String source, int start, int end) {
+        int index = find(source, start, end);
+        String value = mTable[index];
+        if (value == null) {
+            value = source.substring(start, end);
+            add(index, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the pooled string equal to value
+     */
+    synchronized String get(String value) {
+        int index = find(value, 0, value.length());
+        String pooled = mTable[index];
+        if (pooled == null) {
+            // The table may be replaced by add, so the index is not valid after it
+            add(index, value);
+            return value;
+        }
+        return pooled;
+    }
+
+    synchronized int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the index of the equal string or of the empty slot where it must be added
+     */
+    private int find(String source, int start, int end) {
+        int length = end - start;
+        int mask = mTable.length - 1;
+        int index = spread(hash(source, start, end)) & mask;
+        String candidate;
+        while ((candidate = mTable[index]) != null) {
+            if (candidate.length() == length && source.regionMatches(start, candidate, 0, length)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void add(int index, String value) {
+        mTable[index] = value;
+        mSize++;
+        if (mSize * 2 > mTable.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        String[] oldTable = mTable;
+        mTable = new String[oldTable.length * 2];
+        int mask = mTable.length - 1;
+        for (String value : oldTable) {
+            if (value == null) {
+                continue;
+            }
+            int index = spread(value.hashCode()) & mask;
+            while (mTable[index] != null) {
+                index = (index + 1) & mask;
+            }
+            mTable[index] = value;
+        }
+    }
+
+    /**
+     * Same as String.hashCode for the region, without creating the string
+     */
+    private static int hash(String source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the purchases whose signature was already verified
+ * <p>
+ * getPurchases returns the same purchase data and signature on every refresh,
+ * so they are verified only the first time. The entries are found by a digest of both strings
+ * and then compared with them, so a collision is never taken as a verified purchase.
+ * The least recently used entries are evicted.
+ */
+class VerifiedPurchaseCache {
+
+    private final int mMaxEntries;
+    private final Map<Long, Entry> mEntries;
+
+    /**
+     * @param maxEntries maximum number of purchases kept in the cache
+     */
+    VerifiedPurchaseCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(Constants.ERROR_MSG_ARGUMENT_MISSING);
+        }
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return true if exactly the same purchase data and signature were verified before
+     */
+    synchronized boolean contains(String purchaseData, String signature) {
+        Entry entry = mEntries.get(createKey(purchaseData, signature));
+        return entry != null
+                && entry.mSignature.equals(signature)
+                && entry.mPurchaseData.equals(purchaseData);
+    }
+
+    /**
+     * Must be called only after the signature was verified
+     */
+    synchronized void put(String purchaseData, String signature) {
+        mEntries.put(createKey(purchaseData, signature), new Entry(purchaseData, signature));
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    synchronized int getSize() {
+        return mEntries.size();
+    }
+
+    private static Long createKey(String purchaseData, String signature) {
+        return ((long) purchaseData.hashCode() << 32) | (signature.hashCode() & 0xffffffffL);
+    }
+
+    private static class Entry {
+
+        private final String mPurchaseData;
+        private final String mSignature;
+
+        Entry(String purchaseData, String signature) {
+            mPurchaseData = purchaseData;
+            mSignature = signature;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+/**
+ * Work thread that is started on demand and quits its looper after being idle for a while
+ * <p>
+ * The idle timer is restarted every time the handler is requested
+ * and it is stopped while there are operations in progress.
+ * Once the thread quits, the next call to {@link WorkThread#getHandler()} starts a new one,
+ * therefore the returned handler must not be kept.
+ * After {@link WorkThread#quit()} no thread is started again and the handler is null.
+ */
+class WorkThread {
+
+    private final String mName;
+    private final long mIdleTimeoutMillis;
+    private final Runnable mQuitIfIdle = new Runnable() {
+        @Override
+        public void run() {
+            quitIfIdle();
+        }
+    };
+
+    private Handler mHandler;
+    private int mOperationCount;
+    private long mLastUsedMillis;
+    private boolean mQuit;
+
+    /**
+     * @param name              name of the thread
+     * @param idleTimeoutMillis time to keep the thread alive without operations. Zero or less keeps it until quit
+     */
+    WorkThread(String name, long idleTimeoutMillis) {
+        mName = name;
+        mIdleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Starts the thread if it is not running and restarts the idle timer
+     *
+     * @return the handler of the running thread or null if it was quit
+     */
+    synchronized Handler getHandler() {
+        if (mQuit) {
+            return null;
+        }
+        if (mHandler == null) {
+            HandlerThread thread = new HandlerThread(mName);
+            thread.start();
+            mHandler = new Handler(thread.getLooper());
+        }
+        scheduleQuitIfIdle();
+        return mHandler;
+    }
+
+    /**
+     * Keeps the thread alive until {@link WorkThread#endOperation()} is called
+     */
+    synchronized void beginOperation() {
+        mOperationCount++;
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mQuitIfIdle);
+        }
+    }
+
+    synchronized void endOperation() {
+        if (mOperationCount > 0) {
+            mOperationCount--;
+        }
+        scheduleQuitIfIdle();
+    }
+
+    /**
+     * Removes all the pending messages without quitting the thread
+     */
+    synchronized void clear() {
+        if (mHandler != null) {
+            mHandler.removeCallbacksAndMessages(null);
+        }
+        scheduleQuitIfIdle();
+    }
+
+    /**
+     * Removes all the pending messages and quits the thread immediately
+     * The thread is not started again, the messages posted after it are dropped by the callers
+     */
+    synchronized void quit() {
+        mQuit = true;
+        if (mHandler != null) {
+            mHandler.removeCallbacksAndMessages(null);
+            mHandler.getLooper().quit();
+            mHandler = null;
+        }
+        mOperationCount = 0;
+    }
+
+    synchronized boolean isRunning() {
+        return mHandler != null;
+    }
+
+    private void scheduleQuitIfIdle() {
+        if (mHandler == null || mIdleTimeoutMillis <= 0) {
+            return;
+        }
+        mHandler.removeCallbacks(mQuitIfIdle);
+        mLastUsedMillis = SystemClock.uptimeMillis();
+        if (mOperationCount == 0) {
+            mHandler.postDelayed(mQuitIfIdle, mIdleTimeoutMillis);
+        }
+    }
+
+    private synchronized void quitIfIdle() {
+        // The handler may have been requested again while this was waiting for the lock
+        long idleMillis = SystemClock.uptimeMillis() - mLastUsedMillis;
+        if (mOperationCount == 0 && mHandler != null && idleMillis >= mIdleTimeoutMillis) {
+            mHandler.getLooper().quit();
+            mHandler = null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *  Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab.response;
+
+import jp.alessandro.android.iab.BillingException;
+
+public class ConsumeResponse {
+
+    private final String mItemId;
+    private final BillingException mException;
+    private final boolean mIsSuccess;
+
+    public ConsumeResponse(String itemId, BillingException exception) {
+        mItemId = itemId;
+        mException = exception;
+        mIsSuccess = mException == null;
+    }
+
+    public String getItemId() {
+        return mItemId;
+    }
+
+    public BillingException getException() {
+        return mException;
+    }
+
+    public boolean isSuccess() {
+        return mIsSuccess;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.handler.PurchasesHandler;
+import jp.alessandro.android.iab.response.PurchaseResponse;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class BillingEventTest {
+
+    @Test
+    public void recycleAfterDelivery() {
+        final Purchases[] delivered = new Purchases[1];
+        Purchases purchases = new Purchases();
+        PurchasesHandler handler = new PurchasesHandler() {
+            @Override
+            public void onSuccess(Purchases purchases) {
+                delivered[0] = purchases;
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException();
+            }
+        };
+
+        BillingEvent event = BillingEvent.obtainPurchases(handler, purchases);
+        event.run();
+        assertThat(delivered[0]).isSameAs(purchases);
+
+        assertThat(BillingEvent.obtainPurchases(handler, purchases)).isSameAs(event);
+    }
+
+    @Test
+    public void deliverError() {
+        final BillingException[] delivered = new BillingException[1];
+        BillingException exception = new BillingException(Constants.ERROR_REMOTE_EXCEPTION, "");
+        PurchasesHandler handler = new PurchasesHandler() {
+            @Override
+            public void onSuccess(Purchases purchases) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                delivered[0] = e;
+            }
+        };
+
+        BillingEvent.obtainError(handler, exception).run();
+        assertThat(delivered[0]).isSameAs(exception);
+    }
+
+    @Test
+    public void deliverPurchaseError() {
+        final PurchaseResponse[] delivered = new PurchaseResponse[1];
+        BillingException exception = new BillingException(Constants.ERROR_VERIFICATION_FAILED, "");
+        PurchaseHandler handler = new PurchaseHandler() {
+            @Override
+            public void call(PurchaseResponse response) {
+                delivered[0] = response;
+            }
+        };
+
+        BillingEvent.obtainPurchase(handler, null, exception).run();
+        assertThat(delivered[0].isSuccess()).isFalse();
+        assertThat(delivered[0].getException()).isSameAs(exception);
+        assertThat(delivered[0].getPurchase()).isNull();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import jp.alessandro.android.iab.util.DataConverter;
+import jp.alessandro.android.iab.util.ServiceStub;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class BillingProcessorSyncTest {
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+    private final BillingContext mContext = mDataConverter.newBillingContext(RuntimeEnvironment.application);
+    private final ServiceStub mServiceStub = new ServiceStub();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullContext() {
+        new BillingProcessorSync(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullTimeUnit() {
+        new BillingProcessorSync(mContext, 1, null);
+    }
+
+    @Test
+    public void getPurchasesOnMainThread() throws BillingException {
+        BillingProcessorSync processor = new BillingProcessorSync(mContext, 1, TimeUnit.SECONDS);
+        try {
+            processor.getPurchases(PurchaseType.IN_APP);
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD);
+        }
+    }
+
+    @Test
+    public void getItemDetailsOnMainThread() throws BillingException {
+        BillingProcessorSync processor = new BillingProcessorSync(mContext);
+        ArrayList<String> itemIds = new ArrayList<>();
+        itemIds.add("item_id_0");
+        try {
+            processor.getItemDetails(PurchaseType.IN_APP, itemIds);
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD);
+        }
+    }
+
+    @Test
+    public void consumePurchaseOnMainThread() throws BillingException {
+        BillingProcessorSync processor = new BillingProcessorSync(mContext);
+        try {
+            processor.consumePurchase("item_id_0");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD);
+        }
+    }
+
+    @Test
+    public void getPurchases() throws Exception {
+        Bundle stubBundle = new Bundle();
+        stubBundle.putParcelable(ServiceStub.GET_PURCHASES, mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, null));
+        Context bindContext = newBindContext(mServiceStub.create(stubBundle));
+        final BillingProcessorSync processor = newProcessor(bindContext, BillingProcessorSync.DEFAULT_TIMEOUT_MILLIS);
+
+        Purchases purchases = callInBackground(new Callable<Purchases>() {
+            @Override
+            public Purchases call() throws BillingException {
+                return processor.getPurchases(PurchaseType.IN_APP);
+            }
+        });
+        assertThat(purchases.getSize()).isEqualTo(10);
+        verify(bindContext).unbindService(any(ServiceConnection.class));
+    }
+
+    @Test
+    public void getItemDetails() throws Exception {
+        final int size = 3;
+        Bundle responseBundle = new Bundle();
+        responseBundle.putLong(Constants.RESPONSE_CODE, 0L);
+        responseBundle.putStringArrayList(Constants.RESPONSE_DETAILS_LIST,
+                mDataConverter.convertToSkuItemDetailsJsonArrayList(size, PurchaseType.IN_APP));
+        Bundle stubBundle = new Bundle();
+        stubBundle.putParcelable(ServiceStub.GET_SKU_DETAILS, responseBundle);
+        Context bindContext = newBindContext(mServiceStub.create(stubBundle));
+        final BillingProcessorSync processor = newProcessor(bindContext, BillingProcessorSync.DEFAULT_TIMEOUT_MILLIS);
+
+        ItemDetails itemDetails = callInBackground(new Callable<ItemDetails>() {
+            @Override
+            public ItemDetails call() throws BillingException {
+                return processor.getItemDetails(PurchaseType.IN_APP, mDataConverter.convertToItemIdArrayList(size));
+            }
+        });
+        assertThat(itemDetails.getSize()).isEqualTo(size);
+        verify(bindContext).unbindService(any(ServiceConnection.class));
+    }
+
+    @Test
+    public void consumePurchase() throws Exception {
+        Bundle stubBundle = new Bundle();
+        stubBundle.putInt(ServiceStub.CONSUME_PURCHASE, Constants.BILLING_RESPONSE_RESULT_OK);
+        stubBundle.putParcelable(ServiceStub.GET_PURCHASES, mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, null));
+        Context bindContext = newBindContext(mServiceStub.create(stubBundle));
+        final BillingProcessorSync processor = newProcessor(bindContext, BillingProcessorSync.DEFAULT_TIMEOUT_MILLIS);
+
+        callInBackground(new Callable<Void>() {
+            @Override
+            public Void call() throws BillingException {
+                processor.consumePurchase(String.format(Locale.US, "%s_%d", DataConverter.TEST_PRODUCT_ID, 0));
+                return null;
+            }
+        });
+        verify(bindContext).unbindService(any(ServiceConnection.class));
+    }
+
+    @Test
+    public void getPurchasesBindServiceTimeout() throws Exception {
+        // It is bound but never connected
+        Context bindContext = newBindContext(null);
+        assertGetPurchasesError(newProcessor(bindContext, 100), Constants.ERROR_BIND_SERVICE_TIMEOUT);
+        verify(bindContext).unbindService(any(ServiceConnection.class));
+    }
+
+    @Test
+    public void getPurchasesBindServiceFailed() throws Exception {
+        Context bindContext = mock(Context.class);
+        when(bindContext.bindService(any(Intent.class), any(ServiceConnection.class), eq(Context.BIND_AUTO_CREATE)))
+                .thenReturn(false);
+        BillingProcessorSync processor = newProcessor(bindContext, BillingProcessorSync.DEFAULT_TIMEOUT_MILLIS);
+        assertGetPurchasesError(processor, Constants.ERROR_BIND_SERVICE_FAILED_EXCEPTION);
+        verify(bindContext).unbindService(any(ServiceConnection.class));
+    }
+
+    private void assertGetPurchasesError(final BillingProcessorSync processor, int errorCode) throws Exception {
+        try {
+            callInBackground(new Callable<Purchases>() {
+                @Override
+                public Purchases call() throws BillingException {
+                    return processor.getPurchases(PurchaseType.IN_APP);
+                }
+            });
+            throw new IllegalStateException();
+        } catch (BillingException e) {
+            assertThat(e.getErrorCode()).isEqualTo(errorCode);
+        }
+    }
+
+    /**
+     * The service is connected as soon as it is bound, the connection is not delivered on the main thread
+     *
+     * @param stub the connected service or null to never connect it
+     */
+    private Context newBindContext(final IInAppBillingService.Stub stub) {
+        Context context = mock(Context.class);
+        when(context.bindService(any(Intent.class), any(ServiceConnection.class), eq(Context.BIND_AUTO_CREATE)))
+                .thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        if (stub != null) {
+                            ServiceConnection conn = invocation.getArgument(1);
+                            conn.onServiceConnected(null, stub.asBinder());
+                        }
+                        return true;
+                    }
+                });
+        return context;
+    }
+
+    private BillingProcessorSync newProcessor(final Context bindContext, long timeoutMillis) {
+        return new BillingProcessorSync(mContext, timeoutMillis, TimeUnit.MILLISECONDS) {
+            @Override
+            protected ServiceBinder createServiceBinder() {
+                Intent intent = new Intent(Constants.ACTION_BILLING_SERVICE_BIND);
+                intent.setPackage(Constants.VENDING_PACKAGE);
+                return new ServiceBinder(mDataConverter.newBillingContext(bindContext), intent);
+            }
+        };
+    }
+
+    private <T> T callInBackground(Callable<T> callable) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(callable).get(15, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BillingException) {
+                throw (BillingException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
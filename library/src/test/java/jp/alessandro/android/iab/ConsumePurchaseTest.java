@@ -23,6 +23,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.RemoteException;
 
+import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -332,4 +333,50 @@ public class ConsumePurchaseTest {
 
         latch.await(15, TimeUnit.SECONDS);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void consumePurchaseByPurchase() throws InterruptedException, RemoteException, JSONException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Bundle stubBundle = new Bundle();
+        stubBundle.putInt(ServiceStub.CONSUME_PURCHASE, 0);
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        String json = mDataConverter.convertToPurchaseJsonArrayList(0, 1).get(0);
+        Purchase purchase = Purchase.parseJson(json, "");
+
+        mProcessor.consumePurchase(purchase, new ConsumeItemHandler() {
+            @Override
+            public void onSuccess() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException();
+            }
+        });
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToNextPostedRunnable();
+
+        latch.await(15, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void consumePurchaseByPurchaseWithNoToken() throws JSONException {
+        String json = mDataConverter.convertToPurchaseWithNoTokenJsonArrayList(0, 1).get(0);
+        Purchase purchase = Purchase.parseJson(json, "");
+
+        mProcessor.consumePurchase(purchase, new ConsumeItemHandler() {
+            @Override
+            public void onSuccess() {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException();
+            }
+        });
+    }
+}
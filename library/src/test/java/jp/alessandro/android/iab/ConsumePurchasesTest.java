@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.RemoteException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jp.alessandro.android.iab.handler.ConsumeItemsHandler;
+import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.response.ConsumeResponse;
+import jp.alessandro.android.iab.response.PurchaseResponse;
+import jp.alessandro.android.iab.util.DataConverter;
+import jp.alessandro.android.iab.util.ServiceStub;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class ConsumePurchasesTest {
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+    private final BillingContext mContext = mDataConverter.newBillingContext(RuntimeEnvironment.application);
+    private final ServiceStub mServiceStub = new ServiceStub();
+
+    private Handler mWorkHandler;
+    private BillingProcessor mProcessor;
+
+    @Before
+    public void setUp() {
+        mProcessor = new BillingProcessor(mContext, new PurchaseHandler() {
+            @Override
+            public void call(PurchaseResponse response) {
+                assertThat(response).isNotNull();
+            }
+        });
+        mWorkHandler = mProcessor.getWorkHandler();
+    }
+
+    @Test
+    public void consumePurchasesPartialSuccess() throws InterruptedException, RemoteException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Bundle responseBundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, null);
+        Bundle stubBundle = new Bundle();
+        stubBundle.putInt(ServiceStub.CONSUME_PURCHASE, 0);
+        stubBundle.putParcelable(ServiceStub.GET_PURCHASES, responseBundle);
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        final String itemId0 = String.format(Locale.US, "%s_%d", DataConverter.TEST_PRODUCT_ID, 0);
+        final String itemId1 = String.format(Locale.US, "%s_%d", DataConverter.TEST_PRODUCT_ID, 1);
+        final String notOwned = "not_owned_item_id";
+
+        mProcessor.consumePurchases(Arrays.asList(itemId0, notOwned, itemId1, itemId0), new ConsumeItemsHandler() {
+            @Override
+            public void onSuccess(List<ConsumeResponse> responses) {
+                assertThat(responses).hasSize(3);
+                assertThat(responses.get(0).getItemId()).isEqualTo(itemId0);
+                assertThat(responses.get(0).isSuccess()).isTrue();
+                assertThat(responses.get(1).getItemId()).isEqualTo(notOwned);
+                assertThat(responses.get(1).isSuccess()).isFalse();
+                assertThat(responses.get(1).getException().getErrorCode()).isEqualTo(Constants.ERROR_PURCHASE_DATA);
+                assertThat(responses.get(2).getItemId()).isEqualTo(itemId1);
+                assertThat(responses.get(2).isSuccess()).isTrue();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException();
+            }
+        });
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToNextPostedRunnable();
+
+        latch.await(15, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void consumePurchasesInventoryError() throws InterruptedException, RemoteException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Bundle stubBundle = new Bundle();
+        stubBundle.putInt(ServiceStub.CONSUME_PURCHASE, 0);
+
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        mProcessor.consumePurchases(Arrays.asList(DataConverter.TEST_PRODUCT_ID), new ConsumeItemsHandler() {
+            @Override
+            public void onSuccess(List<ConsumeResponse> responses) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                assertThat(e.getErrorCode()).isEqualTo(Constants.ERROR_UNEXPECTED_TYPE);
+                assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_UNEXPECTED_BUNDLE_RESPONSE_NULL);
+                latch.countDown();
+            }
+        });
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToNextPostedRunnable();
+
+        latch.await(15, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void consumePurchasesEmptyList() {
+        mProcessor.consumePurchases(new ArrayList<String>(), new ConsumeItemsHandler() {
+            @Override
+            public void onSuccess(List<ConsumeResponse> responses) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException();
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jp.alessandro.android.iab.logger.DiscardLogger;
+import jp.alessandro.android.iab.logger.Logger;
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class EntitlementStoreTest {
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+
+    @Before
+    public void setUp() {
+        newStore().clear();
+    }
+
+    @Test
+    public void putAndReadOnNextLaunch() throws Exception {
+        Purchase purchase = newPurchases(0, 1).getAll().get(0);
+        EntitlementStore store = newStore();
+
+        store.put(Constants.TYPE_IN_APP, purchase);
+        assertThat(isOwned(store, purchase.getSku())).isTrue();
+        store.save();
+
+        EntitlementStore reloaded = newStore();
+        assertThat(isOwned(reloaded, purchase.getSku())).isTrue();
+        assertThat(getPurchase(reloaded, purchase.getSku()).getOriginalJson()).isEqualTo(purchase.getOriginalJson());
+        assertThat(isOwned(reloaded, DataConverter.TEST_PRODUCT_ID)).isFalse();
+    }
+
+    @Test
+    public void rejectInvalidSignature() throws Exception {
+        Purchases purchases = newPurchases(0, 2);
+        Purchase purchase0 = purchases.getAll().get(0);
+        Purchase purchase1 = purchases.getAll().get(1);
+        // Signature of another purchase
+        Purchase forged = Purchase.parseJson(purchase0.getOriginalJson(), purchase1.getSignature());
+
+        EntitlementStore store = newStore();
+        store.put(Constants.TYPE_IN_APP, forged);
+        store.save();
+
+        assertThat(isOwned(newStore(), forged.getSku())).isFalse();
+    }
+
+    @Test
+    public void reconcileOnlySameType() throws Exception {
+        Purchases inApp = newPurchases(0, 2);
+        Purchases subscriptions = newPurchases(10, 1);
+        EntitlementStore store = newStore();
+
+        store.reconcile(Constants.TYPE_IN_APP, inApp);
+        store.reconcile(Constants.TYPE_SUBSCRIPTION, subscriptions);
+        store.reconcile(Constants.TYPE_IN_APP, newPurchases(1, 1));
+        store.save();
+
+        EntitlementStore reloaded = newStore();
+        assertThat(isOwned(reloaded, inApp.getAll().get(0).getSku())).isFalse();
+        assertThat(isOwned(reloaded, inApp.getAll().get(1).getSku())).isTrue();
+        assertThat(isOwned(reloaded, subscriptions.getAll().get(0).getSku())).isTrue();
+    }
+
+    @Test
+    public void keepTypesApart() throws Exception {
+        Purchase purchase = newPurchases(0, 1).getAll().get(0);
+        EntitlementStore store = newStore();
+
+        store.put(Constants.TYPE_IN_APP, purchase);
+        store.put(Constants.TYPE_SUBSCRIPTION, purchase);
+        store.reconcile(Constants.TYPE_IN_APP, newPurchases(1, 1));
+        store.save();
+
+        EntitlementStore reloaded = newStore();
+        assertThat(isOwned(reloaded, Constants.TYPE_IN_APP, purchase.getSku())).isFalse();
+        assertThat(isOwned(reloaded, Constants.TYPE_SUBSCRIPTION, purchase.getSku())).isTrue();
+        assertThat(isOwned(reloaded, purchase.getSku())).isTrue();
+    }
+
+    @Test
+    public void remove() throws Exception {
+        Purchase purchase = newPurchases(0, 1).getAll().get(0);
+        EntitlementStore store = newStore();
+        store.put(Constants.TYPE_IN_APP, purchase);
+        store.save();
+
+        EntitlementStore reloaded = newStore();
+        reloaded.remove(Constants.TYPE_IN_APP, purchase.getSku());
+        assertThat(isOwned(reloaded, purchase.getSku())).isFalse();
+        reloaded.save();
+
+        assertThat(isOwned(newStore(), purchase.getSku())).isFalse();
+    }
+
+    @Test
+    public void readBrokenFile() throws Exception {
+        File directory = new File(RuntimeEnvironment.application.getFilesDir(), ItemDiskCache.DIRECTORY_NAME);
+        assertThat(directory.mkdirs() || directory.exists()).isTrue();
+        FileOutputStream out = new FileOutputStream(new File(directory, EntitlementStore.FILE_NAME));
+        out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 5, 1, 2});
+        out.close();
+
+        assertThat(isOwned(newStore(), DataConverter.TEST_PRODUCT_ID)).isFalse();
+    }
+
+    @Test
+    public void reconcileWithoutChanges() throws Exception {
+        Purchases purchases = newPurchases(0, 2);
+        EntitlementStore store = newStore();
+        assertThat(store.reconcile(Constants.TYPE_IN_APP, purchases)).isTrue();
+        store.save();
+
+        EntitlementStore reloaded = newStore();
+        assertThat(reloaded.reconcile(Constants.TYPE_IN_APP, newPurchases(0, 2))).isFalse();
+        assertThat(reloaded.reconcile(Constants.TYPE_SUBSCRIPTION, new Purchases())).isFalse();
+        assertThat(reloaded.reconcile(Constants.TYPE_IN_APP, newPurchases(0, 1))).isTrue();
+        assertThat(reloaded.remove(Constants.TYPE_IN_APP, purchases.getAll().get(1).getSku())).isFalse();
+        assertThat(reloaded.remove(Constants.TYPE_IN_APP, purchases.getAll().get(0).getSku())).isTrue();
+    }
+
+    @Test
+    public void getInstanceOncePerFile() {
+        Logger logger = new DiscardLogger();
+        EntitlementStore store = EntitlementStore.getInstance(RuntimeEnvironment.application, null, logger);
+        assertThat(EntitlementStore.getInstance(RuntimeEnvironment.application, null, logger)).isSameAs(store);
+    }
+
+    @Test
+    public void isOwnedOnMainThread() {
+        try {
+            newStore().isOwned(DataConverter.TEST_PRODUCT_ID);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_METHOD_MUST_NOT_BE_CALLED_ON_UI_THREAD);
+        }
+    }
+
+    private EntitlementStore newStore() {
+        return new EntitlementStore(RuntimeEnvironment.application,
+                Security.decodePublicKey(DataConverter.TEST_PUBLIC_KEY_BASE_64), new DiscardLogger());
+    }
+
+    private boolean isOwned(EntitlementStore store, String itemId) throws Exception {
+        return isOwned(store, null, itemId);
+    }
+
+    private boolean isOwned(final EntitlementStore store, final String itemType, final String itemId) throws Exception {
+        return runInBackground(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return itemType == null ? store.isOwned(itemId) : store.isOwned(itemType, itemId);
+            }
+        });
+    }
+
+    private Purchase getPurchase(final EntitlementStore store, final String itemId) throws Exception {
+        return runInBackground(new Callable<Purchase>() {
+            @Override
+            public Purchase call() {
+                return store.getPurchase(itemId);
+            }
+        });
+    }
+
+    private <T> T runInBackground(Callable<T> callable) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(callable).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Purchases newPurchases(int startIndex, int size) throws JSONException {
+        List<String> jsons = mDataConverter.convertToPurchaseJsonArrayList(startIndex, size);
+        List<String> signatures = mDataConverter.convertToSignatureArrayList(jsons);
+        Purchases purchases = new Purchases();
+        for (int i = 0; i < jsons.size(); i++) {
+            purchases.put(Purchase.parseJson(jsons.get(i), signatures.get(i)));
+        }
+        return purchases;
+    }
+}
@@ -24,6 +24,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.RemoteException;
 
+import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -38,11 +39,14 @@ import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jp.alessandro.android.iab.handler.ItemDetailsHandler;
 import jp.alessandro.android.iab.handler.PurchaseHandler;
+import jp.alessandro.android.iab.logger.DiscardLogger;
 import jp.alessandro.android.iab.response.PurchaseResponse;
 import jp.alessandro.android.iab.util.DataConverter;
 import jp.alessandro.android.iab.util.ServiceStub;
@@ -209,6 +213,62 @@ public class GetItemDetailsTest {
         latch.await(15, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void getItemDetailsOnceWithStoredItems() throws InterruptedException, JSONException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final int size = 3;
+
+        BillingContext context = new BillingContext.Builder()
+                .setContext(RuntimeEnvironment.application)
+                .setPublicKeyBase64(DataConverter.TEST_PUBLIC_KEY_BASE_64)
+                .setApiVersion(BillingApi.VERSION_3)
+                .setLogger(new DiscardLogger())
+                .setItemDiskCacheEnabled(true)
+                .build();
+
+        // The stored items are different from the loaded ones
+        ItemDetails stored = new ItemDetails();
+        stored.put(Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 0)));
+        context.getItemDiskCache().write(Constants.TYPE_IN_APP, stored);
+
+        Bundle responseBundle = new Bundle();
+        responseBundle.putLong(Constants.RESPONSE_CODE, 0L);
+        responseBundle.putStringArrayList(Constants.RESPONSE_DETAILS_LIST,
+                mDataConverter.convertToSkuItemDetailsJsonArrayList(size, PurchaseType.IN_APP));
+
+        Bundle stubBundle = new Bundle();
+        stubBundle.putParcelable(ServiceStub.GET_SKU_DETAILS, responseBundle);
+        mServiceStub.setServiceForBinding(stubBundle);
+
+        mProcessor = new BillingProcessor(context, new PurchaseHandler() {
+            @Override
+            public void call(PurchaseResponse response) {
+                throw new IllegalStateException();
+            }
+        });
+        mWorkHandler = mProcessor.getWorkHandler();
+
+        mProcessor.getItemDetailsOnce(PurchaseType.IN_APP, mDataConverter.convertToItemIdArrayList(1), new ItemDetailsHandler() {
+            @Override
+            public void onSuccess(ItemDetails itemDetails) {
+                assertThat(itemDetails.getSize()).isEqualTo(size);
+                calls.incrementAndGet();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(BillingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        shadowOf(mWorkHandler.getLooper()).getScheduler().advanceToLastPostedRunnable();
+
+        latch.await(15, TimeUnit.SECONDS);
+        assertThat(calls.get()).isEqualTo(1);
+        mProcessor.release();
+    }
+
     private void getItemDetails(final PurchaseType type) throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
         final int size = 10;
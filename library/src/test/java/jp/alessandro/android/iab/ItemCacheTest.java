@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import org.json.JSONException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import jp.alessandro.android.iab.logger.DiscardLogger;
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ItemCacheTest {
+
+    private static final long TTL = 1000;
+
+    @Rule
+    public MockitoRule mMockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    IInAppBillingService mService;
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.KEY_FACTORY_ALGORITHM);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTtl() {
+        new ItemCache(0, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxEntries() {
+        new ItemCache(TTL, 0);
+    }
+
+    @Test
+    public void expire() throws JSONException {
+        ItemCache cache = new ItemCache(TTL, 10);
+        Item item = newItem(0);
+        cache.put(Constants.TYPE_IN_APP, item);
+
+        assertThat(cache.get(Constants.TYPE_IN_APP, item.getSku())).isSameAs(item);
+        assertThat(cache.get(Constants.TYPE_SUBSCRIPTION, item.getSku())).isNull();
+
+        SystemClock.sleep(TTL);
+        assertThat(cache.get(Constants.TYPE_IN_APP, item.getSku())).isNull();
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws JSONException {
+        ItemCache cache = new ItemCache(TTL, 2);
+        Item item0 = newItem(0);
+        Item item1 = newItem(1);
+        Item item2 = newItem(2);
+
+        cache.put(Constants.TYPE_IN_APP, item0);
+        cache.put(Constants.TYPE_IN_APP, item1);
+        cache.get(Constants.TYPE_IN_APP, item0.getSku());
+        cache.put(Constants.TYPE_IN_APP, item2);
+
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.get(Constants.TYPE_IN_APP, item0.getSku())).isSameAs(item0);
+        assertThat(cache.get(Constants.TYPE_IN_APP, item1.getSku())).isNull();
+        assertThat(cache.get(Constants.TYPE_IN_APP, item2.getSku())).isSameAs(item2);
+    }
+
+    @Test
+    public void missingItemsDoNotEvictItems() throws JSONException {
+        ItemCache cache = new ItemCache(TTL, 8);
+        Item item0 = newItem(0);
+        Item item1 = newItem(1);
+        cache.put(Constants.TYPE_IN_APP, item0);
+        cache.put(Constants.TYPE_IN_APP, item1);
+
+        for (int i = 0; i < 10; i++) {
+            cache.putMissing(Constants.TYPE_IN_APP, "missing_id_" + i);
+        }
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.get(Constants.TYPE_IN_APP, item0.getSku())).isSameAs(item0);
+        assertThat(cache.get(Constants.TYPE_IN_APP, item1.getSku())).isSameAs(item1);
+
+        // Only a quarter of the entries are kept for the missing item ids
+        assertThat(cache.isMissing(Constants.TYPE_IN_APP, "missing_id_7")).isFalse();
+        assertThat(cache.isMissing(Constants.TYPE_IN_APP, "missing_id_8")).isTrue();
+        assertThat(cache.isMissing(Constants.TYPE_IN_APP, "missing_id_9")).isTrue();
+    }
+
+    @Test
+    public void keyedByLocale() throws JSONException {
+        Locale defaultLocale = Locale.getDefault();
+        ItemCache cache = new ItemCache(TTL, 10);
+        Item item = newItem(0);
+        try {
+            Locale.setDefault(Locale.JAPAN);
+            cache.put(Constants.TYPE_IN_APP, item);
+
+            Locale.setDefault(Locale.US);
+            assertThat(cache.get(Constants.TYPE_IN_APP, item.getSku())).isNull();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void requestOnlyMissingItems() throws RemoteException, BillingException, JSONException {
+        ItemCache cache = new ItemCache(TTL, 10);
+        cache.put(Constants.TYPE_IN_APP, newItem(1));
+
+        ArrayList<String> details = new ArrayList<>();
+        details.add(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 0));
+        details.add(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 2));
+        Bundle responseBundle = new Bundle();
+        responseBundle.putLong(Constants.RESPONSE_CODE, 0L);
+        responseBundle.putStringArrayList(Constants.RESPONSE_DETAILS_LIST, details);
+
+        when(mService.getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class))).thenReturn(responseBundle);
+
+        ItemGetter getter = new ItemGetter(newBillingContext(cache));
+        ArrayList<String> itemIds = mDataConverter.convertToItemIdArrayList(3);
+        ItemDetails itemDetails = getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+
+        assertThat(itemDetails.getSize()).isEqualTo(3);
+        for (int i = 0; i < itemIds.size(); i++) {
+            assertThat(itemDetails.getAll().get(i).getSku()).isEqualTo(itemIds.get(i));
+        }
+        assertThat(cache.getSize()).isEqualTo(3);
+
+        // Everything is cached now
+        itemDetails = getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+        assertThat(itemDetails.getSize()).isEqualTo(3);
+        verify(mService, times(1)).getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class));
+    }
+
+    @Test
+    public void skipMissingItems() throws RemoteException, BillingException {
+        ItemCache cache = new ItemCache(TTL, 10, TTL / 2);
+
+        ArrayList<String> details = new ArrayList<>();
+        details.add(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 0));
+        Bundle responseBundle = new Bundle();
+        responseBundle.putLong(Constants.RESPONSE_CODE, 0L);
+        responseBundle.putStringArrayList(Constants.RESPONSE_DETAILS_LIST, details);
+
+        when(mService.getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class))).thenReturn(responseBundle);
+
+        ItemGetter getter = new ItemGetter(newBillingContext(cache));
+        ArrayList<String> itemIds = mDataConverter.convertToItemIdArrayList(2);
+        getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+
+        assertThat(cache.isMissing(PurchaseType.IN_APP, itemIds.get(0))).isFalse();
+        assertThat(cache.isMissing(PurchaseType.IN_APP, itemIds.get(1))).isTrue();
+        assertThat(cache.isMissing(PurchaseType.SUBSCRIPTION, itemIds.get(1))).isFalse();
+
+        // The missing item is not requested again
+        ItemDetails itemDetails = getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+        assertThat(itemDetails.getSize()).isEqualTo(1);
+        verify(mService, times(1)).getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class));
+
+        SystemClock.sleep(TTL / 2);
+        assertThat(cache.isMissing(PurchaseType.IN_APP, itemIds.get(1))).isFalse();
+
+        getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+        verify(mService, times(2)).getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class));
+    }
+
+    @Test
+    public void keepItemsWithDifferentId() throws RemoteException, BillingException, JSONException {
+        ItemCache cache = new ItemCache(TTL, 10);
+        cache.put(Constants.TYPE_IN_APP, newItem(0));
+
+        ArrayList<String> details = new ArrayList<>();
+        details.add(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 1));
+        Bundle responseBundle = new Bundle();
+        responseBundle.putLong(Constants.RESPONSE_CODE, 0L);
+        responseBundle.putStringArrayList(Constants.RESPONSE_DETAILS_LIST, details);
+
+        when(mService.getSkuDetails(anyInt(), anyString(), anyString(), any(Bundle.class))).thenReturn(responseBundle);
+
+        ItemGetter getter = new ItemGetter(newBillingContext(cache));
+        ArrayList<String> itemIds = mDataConverter.convertToItemIdArrayList(1);
+        itemIds.add("other_id");
+        ItemDetails itemDetails = getter.get(mService, Constants.TYPE_IN_APP, itemIds);
+
+        // The returned item is not dropped and the requested id is not kept as missing
+        assertThat(itemDetails.getSize()).isEqualTo(2);
+        assertThat(itemDetails.hasItemId(String.format(Locale.ENGLISH, "%s_%d", DataConverter.TEST_PRODUCT_ID, 1))).isTrue();
+        assertThat(cache.isMissing(PurchaseType.IN_APP, "other_id")).isFalse();
+        assertThat(getter.getCached(Constants.TYPE_IN_APP, itemIds)).isNull();
+    }
+
+    @Test
+    public void getCachedWithoutService() throws JSONException {
+        ItemCache cache = new ItemCache(TTL, 10);
+        cache.put(Constants.TYPE_IN_APP, newItem(0));
+        cache.putMissing(Constants.TYPE_IN_APP, "missing_id");
+
+        ItemGetter getter = new ItemGetter(newBillingContext(cache));
+        ArrayList<String> itemIds = mDataConverter.convertToItemIdArrayList(1);
+        itemIds.add("missing_id");
+
+        ItemDetails itemDetails = getter.getCached(Constants.TYPE_IN_APP, itemIds);
+        assertThat(itemDetails.getSize()).isEqualTo(1);
+        assertThat(getter.getCached(Constants.TYPE_SUBSCRIPTION, itemIds)).isNull();
+    }
+
+    private Item newItem(int index) throws JSONException {
+        return Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, index));
+    }
+
+    private BillingContext newBillingContext(ItemCache cache) {
+        return new BillingContext.Builder()
+                .setContext(RuntimeEnvironment.application)
+                .setPublicKeyBase64(DataConverter.TEST_PUBLIC_KEY_BASE_64)
+                .setApiVersion(BillingApi.VERSION_3)
+                .setLogger(new DiscardLogger())
+                .setItemCache(cache)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class ItemDetailsTest {
+
+    @Test
+    public void getAllSortedByPrice() throws JSONException {
+        ItemDetails itemDetails = newItemDetails();
+
+        assertThat(itemDetails.getAllSortedByPrice())
+                .containsExactly(itemDetails.get(1), itemDetails.get(3), itemDetails.get(0), itemDetails.get(2));
+        assertThat(itemDetails.getAllSortedByPrice()).isSameAs(itemDetails.getAllSortedByPrice());
+    }
+
+    @Test
+    public void getByPriceMicros() throws JSONException {
+        ItemDetails itemDetails = newItemDetails();
+
+        assertThat(itemDetails.getByPriceMicros(2000000, 3000001)).containsExactly(itemDetails.get(3), itemDetails.get(0));
+        assertThat(itemDetails.getByPriceMicros(5000000, 6000000)).isEmpty();
+        assertThat(itemDetails.getByPriceMicros(3000000, 1000000)).isEmpty();
+    }
+
+    @Test
+    public void getByTypeAndPeriod() throws JSONException {
+        ItemDetails itemDetails = newItemDetails();
+
+        assertThat(itemDetails.getByType(Constants.TYPE_IN_APP)).containsExactly(itemDetails.get(1));
+        assertThat(itemDetails.getByType(Constants.TYPE_SUBSCRIPTION))
+                .containsExactly(itemDetails.get(3), itemDetails.get(0), itemDetails.get(2));
+        assertThat(itemDetails.getBySubscriptionPeriod("P1M")).containsExactly(itemDetails.get(3), itemDetails.get(2));
+        assertThat(itemDetails.getBySubscriptionPeriod("P1W")).isEmpty();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sortedViewIsReadOnly() throws JSONException {
+        newItemDetails().getAllSortedByPrice().clear();
+    }
+
+    @Test
+    public void putRefreshesIndex() throws JSONException {
+        ItemDetails itemDetails = newItemDetails().buildIndex();
+        itemDetails.put(Item.parseJson(newJson(4, Constants.TYPE_SUBSCRIPTION, 500000, "P1M")));
+
+        assertThat(itemDetails.getAllSortedByPrice().get(0)).isSameAs(itemDetails.get(4));
+        assertThat(itemDetails.getBySubscriptionPeriod("P1M")).hasSize(3);
+    }
+
+    private ItemDetails newItemDetails() throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        itemDetails.put(Item.parseJson(newJson(0, Constants.TYPE_SUBSCRIPTION, 3000000, "P1Y")));
+        itemDetails.put(Item.parseJson(newJson(1, Constants.TYPE_IN_APP, 1000000, "")));
+        itemDetails.put(Item.parseJson(newJson(2, Constants.TYPE_SUBSCRIPTION, 4000000, "P1M")));
+        itemDetails.put(Item.parseJson(newJson(3, Constants.TYPE_SUBSCRIPTION, 2000000, "P1M")));
+        return itemDetails;
+    }
+
+    private String newJson(int index, String type, long priceMicros, String period) {
+        return String.format(Locale.ENGLISH, "{\"productId\":\"sku_%d\",\"type\":\"%s\",\"price_amount_micros\":%d,"
+                + "\"subscriptionPeriod\":\"%s\"}", index, type, priceMicros, period);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+
+import jp.alessandro.android.iab.logger.DiscardLogger;
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ItemDiskCacheTest {
+
+    private final DataConverter mDataConverter = new DataConverter(Security.KEY_FACTORY_ALGORITHM, Security.KEY_FACTORY_ALGORITHM);
+
+    @Test
+    public void writeAndReadOnNextLaunch() throws JSONException {
+        ArrayList<String> itemIds = mDataConverter.convertToItemIdArrayList(3);
+        ItemDetails itemDetails = newItemDetails(3);
+
+        newCache().write(Constants.TYPE_IN_APP, itemDetails);
+        ItemDetails stored = newCache().read(Constants.TYPE_IN_APP, itemIds);
+
+        assertThat(stored).isNotNull();
+        assertThat(ItemDiskCache.isSame(stored, itemDetails)).isTrue();
+        assertThat(newCache().read(Constants.TYPE_SUBSCRIPTION, itemIds)).isNull();
+    }
+
+    @Test
+    public void readWithMissingItem() throws JSONException {
+        ItemDiskCache cache = newCache();
+        cache.write(Constants.TYPE_IN_APP, newItemDetails(2));
+
+        assertThat(cache.read(Constants.TYPE_IN_APP, mDataConverter.convertToItemIdArrayList(2))).isNotNull();
+        assertThat(cache.read(Constants.TYPE_IN_APP, mDataConverter.convertToItemIdArrayList(3))).isNull();
+    }
+
+    @Test
+    public void writeKeepsOtherItems() throws JSONException {
+        ItemDiskCache cache = newCache();
+        cache.write(Constants.TYPE_IN_APP, newItemDetails(3));
+
+        ItemDetails one = new ItemDetails();
+        one.put(Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 0)));
+        cache.write(Constants.TYPE_IN_APP, one);
+
+        assertThat(cache.read(Constants.TYPE_IN_APP, mDataConverter.convertToItemIdArrayList(3))).isNotNull();
+    }
+
+    @Test
+    public void writeSkipsUnchangedItems() throws JSONException {
+        ItemDiskCache cache = newCache();
+        cache.write(Constants.TYPE_IN_APP, newItemDetails(3));
+        File file = getFile(Constants.TYPE_IN_APP);
+        assertThat(file.delete()).isTrue();
+
+        cache.write(Constants.TYPE_IN_APP, newItemDetails(3));
+        assertThat(file.exists()).isFalse();
+        // The file is kept in memory
+        assertThat(cache.read(Constants.TYPE_IN_APP, mDataConverter.convertToItemIdArrayList(3))).isNotNull();
+
+        cache.write(Constants.TYPE_IN_APP, newItemDetails(4));
+        assertThat(file.exists()).isTrue();
+    }
+
+    @Test
+    public void readExpiredItem() throws IOException, JSONException {
+        Item item = newItemDetails(1).getAll().get(0);
+        long time = System.currentTimeMillis() - ItemDiskCache.MAX_AGE_MILLIS - 1;
+        JSONObject entry = new JSONObject().put("json", item.getOriginalJson()).put("time", time);
+        writeFile(getFile(Constants.TYPE_IN_APP), new JSONObject().put(item.getSku(), entry).toString());
+
+        assertThat(newCache().read(Constants.TYPE_IN_APP, Collections.singletonList(item.getSku()))).isNull();
+    }
+
+    @Test
+    public void readBrokenFile() throws IOException {
+        File file = getFile(Constants.TYPE_IN_APP);
+        writeFile(file, DataConverter.TEST_JSON_BROKEN);
+
+        assertThat(newCache().read(Constants.TYPE_IN_APP, Collections.singletonList(DataConverter.TEST_PRODUCT_ID))).isNull();
+        assertThat(file.exists()).isFalse();
+    }
+
+    @Test
+    public void getInstanceOncePerDirectory() {
+        ItemDiskCache cache = ItemDiskCache.getInstance(RuntimeEnvironment.application, new DiscardLogger());
+        assertThat(ItemDiskCache.getInstance(RuntimeEnvironment.application, new DiscardLogger())).isSameAs(cache);
+    }
+
+    @Test
+    public void isSame() throws JSONException {
+        ItemDetails itemDetails = newItemDetails(2);
+
+        assertThat(ItemDiskCache.isSame(itemDetails, newItemDetails(2))).isTrue();
+        assertThat(ItemDiskCache.isSame(itemDetails, newItemDetails(3))).isFalse();
+
+        ItemDetails changed = new ItemDetails();
+        changed.put(itemDetails.getAll().get(0));
+        changed.put(Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON, 1)));
+        assertThat(ItemDiskCache.isSame(itemDetails, changed)).isFalse();
+    }
+
+    private File getFile(String itemType) {
+        File directory = new File(RuntimeEnvironment.application.getFilesDir(), ItemDiskCache.DIRECTORY_NAME);
+        return new File(directory, String.format(Locale.US, "items_%s_%s.json", itemType, Locale.getDefault()));
+    }
+
+    private void writeFile(File file, String content) throws IOException {
+        assertThat(file.getParentFile().mkdirs() || file.getParentFile().exists()).isTrue();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private ItemDiskCache newCache() {
+        return new ItemDiskCache(RuntimeEnvironment.application, new DiscardLogger());
+    }
+
+    private ItemDetails newItemDetails(int size) throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        for (String json : mDataConverter.convertToSkuItemDetailsJsonArrayList(size, PurchaseType.IN_APP)) {
+            itemDetails.put(Item.parseJson(json));
+        }
+        return itemDetails;
+    }
+}
@@ -18,6 +18,7 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.BadParcelableException;
 import android.os.Parcel;
 
 import org.json.JSONException;
@@ -53,6 +54,134 @@ public class ItemParcelableTest {
 
         Item fromParcel = Item.CREATOR.createFromParcel(parcel);
 
+        assertSameItem(item, fromParcel);
+    }
+
+    @Test
+    public void writeParsedItemAsJson() throws JSONException {
+        Item item = Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, 0));
+        Parcel parcel = parcel(item);
+        parcel.setDataPosition(0);
+
+        assertSameItem(item, Item.CREATOR.createFromParcel(parcel));
+        // Only the original json is written for a parsed item
+        assertThat(parcel.dataSize()).isLessThan(parcel(copy(item)).dataSize());
+    }
+
+    @Test
+    public void writeConstructedItemFields() {
+        Item item = new Item("{}", "sku", "subs", "title", "description", "JPY", "¥1080", 10800000,
+                "P1M", "P7D", "¥100", 100000, "P1W", 2);
+
+        Parcel parcel = parcel(item);
+        parcel.setDataPosition(0);
+
+        // The fields do not match the json, so they are written one by one
+        assertSameItem(item, Item.CREATOR.createFromParcel(parcel));
+    }
+
+    @Test(expected = BadParcelableException.class)
+    public void readUnknownParcelFormat() {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeByte((byte) 9);
+        parcel.writeString("{}");
+        parcel.setDataPosition(0);
+
+        Item.CREATOR.createFromParcel(parcel);
+    }
+
+    @Test
+    public void writeItemDetailsToParcel() throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, i);
+            itemDetails.put(Item.parseJson(json));
+        }
+        assertSameItemDetails(itemDetails, writeAndRead(itemDetails));
+    }
+
+    @Test
+    public void writeItemDetailsFieldsOnce() throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, i);
+            itemDetails.put(copy(Item.parseJson(json)));
+        }
+        ItemDetails fromParcel = writeAndRead(itemDetails);
+
+        assertSameItemDetails(itemDetails, fromParcel);
+        // The strings repeated by the fields are written once and shared when they are read
+        assertThat(fromParcel.get(0).getType()).isSameAs(fromParcel.get(1).getType());
+        assertThat(parcel(itemDetails).dataSize()).isLessThan(parcelItemsOneByOne(itemDetails).dataSize());
+    }
+
+    @Test
+    public void writeParsedItemDetailsJsonOnce() throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, i);
+            itemDetails.put(Item.parseJson(json));
+        }
+        // The json is split at its quotes, so an escaped quote must be kept
+        itemDetails.put(Item.parseJson("{\"productId\":\"quoted\",\"type\":\"inapp\",\"title\":\"\\\"Title\\\"\"}"));
+
+        assertSameItemDetails(itemDetails, writeAndRead(itemDetails));
+        // The keys and the values repeated by the json of each item are written once
+        assertThat(parcel(itemDetails).dataSize()).isLessThan(parcelItemsOneByOne(itemDetails).dataSize());
+    }
+
+    @Test
+    public void newArray() {
+        Item[] items = Item.CREATOR.newArray(10);
+        assertThat(items.length).isEqualTo(10);
+        assertThat(ItemDetails.CREATOR.newArray(10).length).isEqualTo(10);
+    }
+
+    private ItemDetails writeAndRead(ItemDetails itemDetails) {
+        Parcel parcel = Parcel.obtain();
+        itemDetails.writeToParcel(parcel, itemDetails.describeContents());
+        parcel.setDataPosition(0);
+        return ItemDetails.CREATOR.createFromParcel(parcel);
+    }
+
+    private Parcel parcel(ItemDetails itemDetails) {
+        Parcel parcel = Parcel.obtain();
+        itemDetails.writeToParcel(parcel, itemDetails.describeContents());
+        return parcel;
+    }
+
+    private Parcel parcel(Item item) {
+        Parcel parcel = Parcel.obtain();
+        item.writeToParcel(parcel, item.describeContents());
+        return parcel;
+    }
+
+    private Parcel parcelItemsOneByOne(ItemDetails itemDetails) {
+        Parcel parcel = Parcel.obtain();
+        for (Item item : itemDetails.getAll()) {
+            item.writeToParcel(parcel, item.describeContents());
+        }
+        return parcel;
+    }
+
+    /**
+     * @return the same item created with the public constructor, so its fields are written one by one
+     */
+    private Item copy(Item item) {
+        return new Item(item.getOriginalJson(), item.getSku(), item.getType(), item.getTitle(),
+                item.getDescription(), item.getCurrency(), item.getPrice(), item.getPriceMicros(),
+                item.getSubscriptionPeriod(), item.getFreeTrialPeriod(), item.getIntroductoryPrice(),
+                item.getIntroductoryPriceAmountMicros(), item.getIntroductoryPricePeriod(), item.getIntroductoryPriceCycles());
+    }
+
+    private void assertSameItemDetails(ItemDetails itemDetails, ItemDetails fromParcel) {
+        assertThat(fromParcel.getSize()).isEqualTo(itemDetails.getSize());
+        for (int i = 0; i < itemDetails.getSize(); i++) {
+            assertSameItem(itemDetails.get(i), fromParcel.get(i));
+        }
+    }
+
+    private void assertSameItem(Item item, Item fromParcel) {
         assertThat(item.getOriginalJson()).isEqualTo(fromParcel.getOriginalJson());
         assertThat(item.getSku()).isEqualTo(fromParcel.getSku());
         assertThat(item.getType()).isEqualTo(fromParcel.getType());
@@ -68,10 +197,4 @@ public class ItemParcelableTest {
         assertThat(item.getIntroductoryPricePeriod()).isEqualTo(fromParcel.getIntroductoryPricePeriod());
         assertThat(item.getIntroductoryPriceCycles()).isEqualTo(fromParcel.getIntroductoryPriceCycles());
     }
-
-    @Test
-    public void newArray() {
-        Item[] items = Item.CREATOR.newArray(10);
-        assertThat(items.length).isEqualTo(10);
-    }
 }
\ No newline at end of file
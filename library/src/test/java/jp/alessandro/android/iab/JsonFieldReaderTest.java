@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Parcel;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class JsonFieldReaderTest {
+
+    private static final String[] ITEM_JSON = {
+            String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, 0),
+            String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON, 0),
+            "{}",
+            " {\"productId\" : \"sku\\u00e9\\n\\\"quoted\\\"\", \"extra\":[1, {\"a\":[]}, -1.5e3, null, true]} ",
+            "{\"pro\\u0064uctId\":\"escaped name\",\"productId\":\"duplicated\"}",
+            "{\"productId\":null,\"price_amount_micros\":\"1990000\"}",
+            "{\"productId\":1,\"price_amount_micros\":1.5}",
+            "{\"price_amount_micros\":010,\"introductoryPriceCycles\":9999999999}",
+            "{'productId':'single quotes'}",
+            "{\"productId\":\"trailing comma\",}",
+            "{\"productId\":\"trailing data\"} 123",
+    };
+
+    private static final String[] PURCHASE_JSON = {
+            String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, 0),
+            String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT_AUTO_RENEWING_FALSE, 0),
+            String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT_NO_TOKEN, 0),
+            "{\"purchaseToken\":\"purchase token\",\"autoRenewing\":\"true\"}",
+            "{\"token\":\"token\",\"purchaseToken\":\"purchase token\",\"purchaseTime\":-1}",
+    };
+
+    @Test
+    public void readFields() {
+        JsonFieldReader reader = new JsonFieldReader(
+                "{\"a\":\"text\",\"b\":123,\"c\":true,\"ignored\":{\"a\":\"nested\"}}",
+                new String[]{"a", "b", "c", "d"},
+                new int[]{JsonFieldReader.TYPE_STRING, JsonFieldReader.TYPE_LONG, JsonFieldReader.TYPE_BOOLEAN,
+                        JsonFieldReader.TYPE_STRING});
+
+        assertThat(reader.read()).isTrue();
+        assertThat(reader.getString(0)).isEqualTo("text");
+        assertThat(reader.getLong(1)).isEqualTo(123);
+        assertThat(reader.getBoolean(2)).isTrue();
+        assertThat(reader.has(3)).isFalse();
+        assertThat(reader.getString(3)).isEmpty();
+    }
+
+    @Test
+    public void readUnexpectedType() {
+        JsonFieldReader reader = new JsonFieldReader("{\"a\":\"123\"}",
+                new String[]{"a"}, new int[]{JsonFieldReader.TYPE_LONG});
+
+        assertThat(reader.read()).isFalse();
+    }
+
+    @Test
+    public void readInvalidJson() {
+        String[] names = {"a"};
+        int[] types = {JsonFieldReader.TYPE_STRING};
+
+        assertThat(new JsonFieldReader("", names, types).read()).isFalse();
+        assertThat(new JsonFieldReader("[]", names, types).read()).isFalse();
+        assertThat(new JsonFieldReader(DataConverter.TEST_JSON_BROKEN, names, types).read()).isFalse();
+        assertThat(new JsonFieldReader("{\"a\":\"\\x\"}", names, types).read()).isFalse();
+        assertThat(new JsonFieldReader("{\"a\":\"\\u12\"}", names, types).read()).isFalse();
+    }
+
+    @Test
+    public void sameItemAsJsonObject() throws JSONException {
+        for (String json : ITEM_JSON) {
+            assertSameItem(Item.parseJson(json), Item.parseJsonObject(json));
+        }
+    }
+
+    @Test
+    public void sameLazyItemAsJsonObject() throws JSONException {
+        for (String json : ITEM_JSON) {
+            assertSameItem(Item.parseJson(json, null, true, false), Item.parseJsonObject(json));
+        }
+    }
+
+    @Test
+    public void writeLazyItemToParcel() throws JSONException {
+        Item item = Item.parseJson(ITEM_JSON[1], null, true, false);
+
+        Parcel parcel = Parcel.obtain();
+        item.writeToParcel(parcel, item.describeContents());
+        parcel.setDataPosition(0);
+
+        assertSameItem(Item.CREATOR.createFromParcel(parcel), item);
+    }
+
+    @Test
+    public void samePurchaseAsJsonObject() throws JSONException {
+        for (String json : PURCHASE_JSON) {
+            assertSamePurchase(Purchase.parseJson(json, "signature"), Purchase.parseJsonObject(json, "signature"));
+        }
+    }
+
+    @Test
+    public void sameLazyPurchaseAsJsonObject() throws JSONException {
+        for (String json : PURCHASE_JSON) {
+            assertSamePurchase(Purchase.parseJson(json, "signature", null, true, false), Purchase.parseJsonObject(json, "signature"));
+        }
+    }
+
+    @Test
+    public void compactItemKeepsOriginalJson() throws JSONException {
+        for (String json : ITEM_JSON) {
+            // The compact mode takes precedence over the lazy parsing
+            for (boolean lazy : new boolean[]{false, true}) {
+                Item item = Item.parseJson(json, null, lazy, true);
+
+                assertThat(item.getOriginalJson()).isSameAs(json);
+                assertSameItem(item, Item.parseJsonObject(json));
+            }
+        }
+    }
+
+    @Test
+    public void writeCompactItemToParcel() throws JSONException {
+        Item item = Item.parseJson(ITEM_JSON[1], null, false, true);
+
+        Parcel parcel = Parcel.obtain();
+        item.writeToParcel(parcel, item.describeContents());
+        parcel.setDataPosition(0);
+
+        assertSameItem(Item.CREATOR.createFromParcel(parcel), item);
+    }
+
+    @Test
+    public void compactPurchaseKeepsOriginalJson() throws JSONException {
+        for (String json : PURCHASE_JSON) {
+            Purchase purchase = Purchase.parseJson(json, "signature", null, false, true);
+
+            assertThat(purchase.getOriginalJson()).isSameAs(json);
+            assertSamePurchase(purchase, Purchase.parseJsonObject(json, "signature"));
+        }
+    }
+
+    @Test
+    public void writeCompactPurchaseToParcel() throws JSONException {
+        Purchase purchase = Purchase.parseJson(PURCHASE_JSON[0], "signature", null, false, true);
+
+        Parcel parcel = Parcel.obtain();
+        purchase.writeToParcel(parcel, purchase.describeContents());
+        parcel.setDataPosition(0);
+
+        assertSamePurchase(Purchase.CREATOR.createFromParcel(parcel), purchase);
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseBrokenJson() throws JSONException {
+        Item.parseJson(DataConverter.TEST_JSON_BROKEN);
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseBrokenJsonLazily() throws JSONException {
+        Purchase.parseJson(DataConverter.TEST_JSON_BROKEN, "signature", null, true, false);
+    }
+
+    private void assertSameItem(Item item, Item expected) {
+        assertThat(item.getOriginalJson()).isEqualTo(expected.getOriginalJson());
+        assertThat(item.getSku()).isEqualTo(expected.getSku());
+        assertThat(item.getType()).isEqualTo(expected.getType());
+        assertThat(item.getTitle()).isEqualTo(expected.getTitle());
+        assertThat(item.getDescription()).isEqualTo(expected.getDescription());
+        assertThat(item.getCurrency()).isEqualTo(expected.getCurrency());
+        assertThat(item.getPrice()).isEqualTo(expected.getPrice());
+        assertThat(item.getPriceMicros()).isEqualTo(expected.getPriceMicros());
+        assertThat(item.getSubscriptionPeriod()).isEqualTo(expected.getSubscriptionPeriod());
+        assertThat(item.getFreeTrialPeriod()).isEqualTo(expected.getFreeTrialPeriod());
+        assertThat(item.getIntroductoryPrice()).isEqualTo(expected.getIntroductoryPrice());
+        assertThat(item.getIntroductoryPriceAmountMicros()).isEqualTo(expected.getIntroductoryPriceAmountMicros());
+        assertThat(item.getIntroductoryPricePeriod()).isEqualTo(expected.getIntroductoryPricePeriod());
+        assertThat(item.getIntroductoryPriceCycles()).isEqualTo(expected.getIntroductoryPriceCycles());
+    }
+
+    private void assertSamePurchase(Purchase purchase, Purchase expected) {
+        assertThat(purchase.getOriginalJson()).isEqualTo(expected.getOriginalJson());
+        assertThat(purchase.getOrderId()).isEqualTo(expected.getOrderId());
+        assertThat(purchase.getPackageName()).isEqualTo(expected.getPackageName());
+        assertThat(purchase.getSku()).isEqualTo(expected.getSku());
+        assertThat(purchase.getPurchaseTime()).isEqualTo(expected.getPurchaseTime());
+        assertThat(purchase.getPurchaseState()).isEqualTo(expected.getPurchaseState());
+        assertThat(purchase.getDeveloperPayload()).isEqualTo(expected.getDeveloperPayload());
+        assertThat(purchase.getToken()).isEqualTo(expected.getToken());
+        assertThat(purchase.isAutoRenewing()).isEqualTo(expected.isAutoRenewing());
+        assertThat(purchase.getSignature()).isEqualTo(expected.getSignature());
+    }
+}
@@ -37,6 +37,12 @@ import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import jp.alessandro.android.iab.util.DataConverter;
 
@@ -390,4 +396,258 @@ public class PurchaseGetterTest {
             verifyNoMoreInteractions(mService);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getWithValidSignaturesInParallel() throws RemoteException, BillingException {
+        int size = 50;
+        ArrayList<String> purchaseArray = mDataConverter.convertToPurchaseJsonArrayList(0, size);
+        Bundle bundle = new Bundle();
+        bundle.putLong(Constants.RESPONSE_CODE, 0L);
+        bundle.putStringArrayList(Constants.RESPONSE_INAPP_PURCHASE_LIST, purchaseArray);
+        bundle.putStringArrayList(Constants.RESPONSE_INAPP_SIGNATURE_LIST, mDataConverter.convertToSignatureArrayList(purchaseArray));
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(bundle);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BillingContext context = newBillingContextBuilder()
+                    .setVerificationExecutor(executor)
+                    .build();
+            Purchases purchases = new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+
+            List<Purchase> purchaseList = purchases.getAll();
+            assertThat(purchaseList).hasSize(size);
+            for (int i = 0; i < size; i++) {
+                assertThat(purchaseList.get(i).getOriginalJson()).isEqualTo(purchaseArray.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getWithInvalidSignaturesDropped() throws RemoteException, BillingException {
+        ArrayList<String> purchaseArray = mDataConverter.convertToPurchaseJsonArrayList(0, 5);
+        Bundle bundle = new Bundle();
+        bundle.putLong(Constants.RESPONSE_CODE, 0L);
+        bundle.putStringArrayList(Constants.RESPONSE_INAPP_PURCHASE_LIST, purchaseArray);
+        bundle.putStringArrayList(Constants.RESPONSE_INAPP_SIGNATURE_LIST, mDataConverter.convertToInvalidSignatureRandomlyArrayList(purchaseArray));
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(bundle);
+
+        BillingContext context = newBillingContextBuilder()
+                .setDropInvalidPurchases(true)
+                .build();
+        Purchases purchases = new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+
+        assertThat(purchases.getSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void getPipelinedUsingContinuationToken() throws RemoteException, BillingException {
+        String continuationString = "continuation_token";
+        Bundle bundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, continuationString);
+        Bundle bundle2 = mDataConverter.convertToPurchaseResponseBundle(0, 10, 10, null);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(bundle);
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                continuationString
+        )).thenReturn(bundle2);
+
+        try {
+            BillingContext context = newBillingContextBuilder()
+                    .setVerificationExecutor(executor)
+                    .build();
+            Purchases purchases = new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+
+            List<String> purchaseArray = new ArrayList<>(bundle.getStringArrayList(Constants.RESPONSE_INAPP_PURCHASE_LIST));
+            purchaseArray.addAll(bundle2.getStringArrayList(Constants.RESPONSE_INAPP_PURCHASE_LIST));
+            List<Purchase> purchaseList = purchases.getAll();
+            assertThat(purchaseList).hasSize(20);
+            for (int i = 0; i < purchaseList.size(); i++) {
+                assertThat(purchaseList.get(i).getOriginalJson()).isEqualTo(purchaseArray.get(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getPipelinedWithRemoteExceptionInSecondPage() throws RemoteException {
+        String continuationString = "continuation_token";
+        Bundle bundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, continuationString);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(bundle);
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                continuationString
+        )).thenThrow(RemoteException.class);
+
+        Purchases purchases = null;
+        try {
+            BillingContext context = newBillingContextBuilder()
+                    .setVerificationExecutor(executor)
+                    .build();
+            purchases = new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+        } catch (BillingException e) {
+            assertThat(e.getErrorCode()).isEqualTo(Constants.ERROR_REMOTE_EXCEPTION);
+        } finally {
+            executor.shutdown();
+            assertThat(purchases).isNull();
+        }
+    }
+
+    @Test
+    public void getPipelinedWithRemoteExceptionDoesNotWaitForPages() throws RemoteException {
+        String continuationString = "continuation_token";
+        Bundle bundle = mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, continuationString);
+        mockPagesWithRemoteExceptionInSecondPage(bundle, continuationString);
+
+        // The first page is never verified
+        BillingContext context = newBillingContextBuilder()
+                .setVerificationExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                    }
+                })
+                .build();
+        try {
+            new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+            throw new IllegalStateException();
+        } catch (BillingException e) {
+            assertThat(e.getErrorCode()).isEqualTo(Constants.ERROR_REMOTE_EXCEPTION);
+        }
+    }
+
+    @Test
+    public void getPipelinedWithErrorInFinishedPage() throws RemoteException {
+        String continuationString = "continuation_token";
+        Bundle bundle = new Bundle();
+        bundle.putLong(Constants.RESPONSE_CODE, Constants.BILLING_RESPONSE_RESULT_ERROR);
+        bundle.putString(Constants.RESPONSE_INAPP_CONTINUATION_TOKEN, continuationString);
+        mockPagesWithRemoteExceptionInSecondPage(bundle, continuationString);
+
+        // The first page is verified before the second one is requested
+        BillingContext context = newBillingContextBuilder()
+                .setVerificationExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                })
+                .build();
+        try {
+            new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+            throw new IllegalStateException();
+        } catch (BillingException e) {
+            assertThat(e.getErrorCode()).isEqualTo(Constants.BILLING_RESPONSE_RESULT_ERROR);
+        }
+    }
+
+    @Test
+    public void getPipelinedInsideExecutor() throws Exception {
+        String continuationString = "continuation_token";
+        mockTwoPages(continuationString);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final BillingContext context = newBillingContextBuilder()
+                .setVerificationExecutor(executor)
+                .build();
+
+        // The pages are queued behind the caller, so the caller verifies them
+        try {
+            Future<Purchases> future = executor.submit(new Callable<Purchases>() {
+                @Override
+                public Purchases call() throws BillingException {
+                    return new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+                }
+            });
+            assertThat(future.get(10, TimeUnit.SECONDS).getSize()).isEqualTo(20);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void getPipelinedWithExecutorDiscardingPages() throws Exception {
+        String continuationString = "continuation_token";
+        mockTwoPages(continuationString);
+        BillingContext context = newBillingContextBuilder()
+                .setVerificationExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                    }
+                })
+                .build();
+
+        Purchases purchases = new PurchaseGetter(context).get(mService, Constants.TYPE_IN_APP);
+        assertThat(purchases.getSize()).isEqualTo(20);
+    }
+
+    private void mockTwoPages(String continuationString) throws RemoteException {
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(mDataConverter.convertToPurchaseResponseBundle(0, 0, 10, continuationString));
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                continuationString
+        )).thenReturn(mDataConverter.convertToPurchaseResponseBundle(0, 10, 10, null));
+    }
+
+    private void mockPagesWithRemoteExceptionInSecondPage(Bundle bundle, String continuationString) throws RemoteException {
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                null
+        )).thenReturn(bundle);
+
+        Mockito.when(mService.getPurchases(
+                mBillingContext.getApiVersion(),
+                mBillingContext.getContext().getPackageName(),
+                Constants.TYPE_IN_APP,
+                continuationString
+        )).thenThrow(RemoteException.class);
+    }
+
+    private BillingContext.Builder newBillingContextBuilder() {
+        return new BillingContext.Builder()
+                .setContext(RuntimeEnvironment.application)
+                .setPublicKeyBase64(DataConverter.TEST_PUBLIC_KEY_BASE_64)
+                .setApiVersion(BillingApi.VERSION_3);
+    }
+}
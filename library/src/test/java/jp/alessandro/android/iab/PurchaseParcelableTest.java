@@ -18,6 +18,7 @@
 
 package jp.alessandro.android.iab;
 
+import android.os.BadParcelableException;
 import android.os.Parcel;
 
 import org.json.JSONException;
@@ -26,6 +27,8 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Locale;
+
 import jp.alessandro.android.iab.util.DataConverter;
 import jp.alessandro.android.iab.util.DataSigner;
 
@@ -62,22 +65,124 @@ public class PurchaseParcelableTest {
         writeToParcel(purchase);
     }
 
+    @Test
+    public void writeParsedPurchaseAsJson() throws JSONException {
+        Purchase purchase = Purchase.parseJson(DataConverter.TEST_JSON_RECEIPT, "signature");
+
+        // Only the original json and the signature are written for a parsed purchase
+        assertThat(parcel(purchase).dataSize()).isLessThan(parcel(copy(purchase)).dataSize());
+        writeToParcel(purchase);
+    }
+
+    @Test
+    public void writeConstructedPurchaseFields() {
+        Purchase purchase = new Purchase("{}", "order", "package", "sku", 1000, 1, "payload", "token", true, "signature");
+
+        Parcel parcel = parcel(purchase);
+        parcel.setDataPosition(0);
+
+        // The fields do not match the json, so they are written one by one
+        assertSamePurchase(purchase, Purchase.CREATOR.createFromParcel(parcel));
+    }
+
+    @Test(expected = BadParcelableException.class)
+    public void readUnknownParcelFormat() {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeByte((byte) 9);
+        parcel.writeString("{}");
+        parcel.setDataPosition(0);
+
+        Purchase.CREATOR.createFromParcel(parcel);
+    }
+
+    @Test
+    public void writePurchasesToParcel() throws JSONException {
+        Purchases purchases = new Purchases();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, i);
+            // The last one is kept in compact mode
+            purchases.put(Purchase.parseJson(json, "signature_" + i, null, false, i == 9));
+        }
+        assertSamePurchases(purchases, writeAndRead(purchases));
+    }
+
+    @Test
+    public void writePurchasesFieldsOnce() throws JSONException {
+        Purchases purchases = new Purchases();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, i);
+            purchases.put(copy(Purchase.parseJson(json, "signature_" + i)));
+        }
+        Purchases fromParcel = writeAndRead(purchases);
+
+        assertSamePurchases(purchases, fromParcel);
+        // The strings repeated by the fields are written once and shared when they are read
+        assertThat(fromParcel.get(0).getPackageName()).isSameAs(fromParcel.get(1).getPackageName());
+    }
+
+    @Test
+    public void writeParsedPurchasesJsonOnce() throws JSONException {
+        Purchases purchases = new Purchases();
+        for (int i = 0; i < 10; i++) {
+            String json = String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, i);
+            purchases.put(Purchase.parseJson(json, "signature_" + i));
+        }
+        assertSamePurchases(purchases, writeAndRead(purchases));
+        // The keys and the values repeated by the json of each purchase are written once
+        assertThat(parcel(purchases).dataSize()).isLessThan(parcelPurchasesOneByOne(purchases).dataSize());
+    }
+
     @Test
     public void newArray() {
         Purchase[] items = Purchase.CREATOR.newArray(10);
         assertThat(items.length).isEqualTo(10);
+        assertThat(Purchases.CREATOR.newArray(10).length).isEqualTo(10);
     }
 
-    private void writeToParcel(Purchase purchase) {
-        // Obtain a Parcel object and write the parcelable object to it
+    private Purchases writeAndRead(Purchases purchases) {
+        Parcel parcel = Parcel.obtain();
+        purchases.writeToParcel(parcel, purchases.describeContents());
+        parcel.setDataPosition(0);
+        return Purchases.CREATOR.createFromParcel(parcel);
+    }
+
+    private Parcel parcel(Purchases purchases) {
+        Parcel parcel = Parcel.obtain();
+        purchases.writeToParcel(parcel, purchases.describeContents());
+        return parcel;
+    }
+
+    private Parcel parcelPurchasesOneByOne(Purchases purchases) {
+        Parcel parcel = Parcel.obtain();
+        for (Purchase purchase : purchases.getAll()) {
+            purchase.writeToParcel(parcel, purchase.describeContents());
+        }
+        return parcel;
+    }
+
+    private Parcel parcel(Purchase purchase) {
         Parcel parcel = Parcel.obtain();
         purchase.writeToParcel(parcel, purchase.describeContents());
+        return parcel;
+    }
 
-        // After you're done with writing, you need to reset the parcel for reading
-        parcel.setDataPosition(0);
+    /**
+     * @return the same purchase created with the public constructor, so its fields are written one by one
+     */
+    private Purchase copy(Purchase purchase) {
+        return new Purchase(purchase.getOriginalJson(), purchase.getOrderId(), purchase.getPackageName(),
+                purchase.getSku(), purchase.getPurchaseTime(), purchase.getPurchaseState(), purchase.getDeveloperPayload(),
+                purchase.getToken(), purchase.isAutoRenewing(), purchase.getSignature());
+    }
 
-        Purchase fromParcel = Purchase.CREATOR.createFromParcel(parcel);
+    private void assertSamePurchases(Purchases purchases, Purchases fromParcel) {
+        assertThat(fromParcel.getSize()).isEqualTo(purchases.getSize());
+        for (int i = 0; i < purchases.getSize(); i++) {
+            assertSamePurchase(purchases.get(i), fromParcel.get(i));
+        }
+    }
 
+    private void assertSamePurchase(Purchase purchase, Purchase fromParcel) {
         assertThat(purchase.getOriginalJson()).isEqualTo(fromParcel.getOriginalJson());
         assertThat(purchase.getOrderId()).isEqualTo(fromParcel.getOrderId());
         assertThat(purchase.getPackageName()).isEqualTo(fromParcel.getPackageName());
@@ -89,4 +194,17 @@ public class PurchaseParcelableTest {
         assertThat(purchase.isAutoRenewing()).isEqualTo(fromParcel.isAutoRenewing());
         assertThat(purchase.getSignature()).isEqualTo(fromParcel.getSignature());
     }
+
+    private void writeToParcel(Purchase purchase) {
+        // Obtain a Parcel object and write the parcelable object to it
+        Parcel parcel = Parcel.obtain();
+        purchase.writeToParcel(parcel, purchase.describeContents());
+
+        // After you're done with writing, you need to reset the parcel for reading
+        parcel.setDataPosition(0);
+
+        Purchase fromParcel = Purchase.CREATOR.createFromParcel(parcel);
+
+        assertSamePurchase(purchase, fromParcel);
+    }
 }
\ No newline at end of file
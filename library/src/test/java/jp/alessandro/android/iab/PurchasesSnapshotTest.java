@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PurchasesSnapshotTest {
+
+    @Test
+    public void putAndGet() {
+        PurchasesSnapshot snapshot = new PurchasesSnapshot();
+        Purchases purchases = new Purchases();
+
+        snapshot.put(PurchaseType.IN_APP, purchases, snapshot.getGeneration());
+
+        assertThat(snapshot.get(PurchaseType.IN_APP)).isSameAs(purchases);
+        assertThat(snapshot.get(PurchaseType.SUBSCRIPTION)).isNull();
+    }
+
+    @Test
+    public void invalidate() {
+        PurchasesSnapshot snapshot = new PurchasesSnapshot();
+        snapshot.put(PurchaseType.IN_APP, new Purchases(), snapshot.getGeneration());
+        snapshot.put(PurchaseType.SUBSCRIPTION, new Purchases(), snapshot.getGeneration());
+
+        snapshot.invalidate();
+
+        assertThat(snapshot.get(PurchaseType.IN_APP)).isNull();
+        assertThat(snapshot.get(PurchaseType.SUBSCRIPTION)).isNull();
+    }
+
+    @Test
+    public void ignoreLoadStartedBeforeInvalidation() {
+        PurchasesSnapshot snapshot = new PurchasesSnapshot();
+        int generation = snapshot.getGeneration();
+
+        snapshot.invalidate();
+        snapshot.put(PurchaseType.IN_APP, new Purchases(), generation);
+
+        assertThat(snapshot.get(PurchaseType.IN_APP)).isNull();
+    }
+}
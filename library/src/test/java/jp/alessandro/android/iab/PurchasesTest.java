@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Locale;
+
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class PurchasesTest {
+
+    @Test
+    public void getAllReturnsSameList() throws JSONException {
+        Purchases purchases = newPurchases(3);
+        List<Purchase> all = purchases.getAll();
+
+        assertThat(all).hasSize(3);
+        assertThat(purchases.getAll()).isSameAs(all);
+        for (int i = 0; i < all.size(); i++) {
+            assertThat(purchases.get(i)).isSameAs(all.get(i));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getAllIsReadOnly() throws JSONException {
+        newPurchases(1).getAll().clear();
+    }
+
+    @Test
+    public void putRefreshesList() throws JSONException {
+        Purchases purchases = newPurchases(1);
+        List<Purchase> all = purchases.getAll();
+        purchases.put(Purchase.parseJson(String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, 1), ""));
+
+        assertThat(all).hasSize(1);
+        assertThat(purchases.getAll()).hasSize(2);
+        assertThat(purchases.get(1).getSku()).isEqualTo(DataConverter.TEST_PRODUCT_ID + "_1");
+    }
+
+    @Test
+    public void getItemDetailsByIndex() throws JSONException {
+        ItemDetails itemDetails = new ItemDetails();
+        for (int i = 0; i < 3; i++) {
+            itemDetails.put(Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_DETAILS_JSON, i)));
+        }
+        assertThat(itemDetails.getAll()).isSameAs(itemDetails.getAll());
+        assertThat(itemDetails.get(2).getSku()).isEqualTo(DataConverter.TEST_PRODUCT_ID + "_2");
+    }
+
+    @Test
+    public void getByTokenAndOrderId() throws JSONException {
+        Purchases purchases = newIndexedPurchases();
+
+        assertThat(purchases.getByToken("token_1").getSku()).isEqualTo("sku_1");
+        assertThat(purchases.getByOrderId("order_2").getSku()).isEqualTo("sku_2");
+        assertThat(purchases.getByToken("token_9")).isNull();
+        assertThat(purchases.getByOrderId("")).isNull();
+    }
+
+    @Test
+    public void getByPurchaseState() throws JSONException {
+        Purchases purchases = newIndexedPurchases();
+
+        assertThat(purchases.getByPurchaseState(0)).containsExactly(purchases.get(0), purchases.get(2));
+        assertThat(purchases.getByPurchaseState(2)).containsExactly(purchases.get(1));
+        assertThat(purchases.getByPurchaseState(1)).isEmpty();
+    }
+
+    @Test
+    public void getByPurchaseTime() throws JSONException {
+        Purchases purchases = newIndexedPurchases();
+
+        assertThat(purchases.getByPurchaseTime(0, Long.MAX_VALUE))
+                .containsExactly(purchases.get(2), purchases.get(0), purchases.get(1));
+        assertThat(purchases.getByPurchaseTime(1000, 3000)).containsExactly(purchases.get(2), purchases.get(0));
+        assertThat(purchases.getByPurchaseTime(2001, 3000)).isEmpty();
+        assertThat(purchases.getByPurchaseTime(3000, 1000)).isEmpty();
+    }
+
+    @Test
+    public void putRefreshesIndex() throws JSONException {
+        Purchases purchases = newIndexedPurchases();
+        assertThat(purchases.getByToken("token_3")).isNull();
+
+        purchases.put(Purchase.parseJson(newJson(3, 4000, 0), ""));
+        assertThat(purchases.getByToken("token_3").getSku()).isEqualTo("sku_3");
+        assertThat(purchases.getByPurchaseTime(4000, 4001)).hasSize(1);
+    }
+
+    private Purchases newIndexedPurchases() throws JSONException {
+        Purchases purchases = new Purchases();
+        purchases.put(Purchase.parseJson(newJson(0, 2000, 0), ""));
+        purchases.put(Purchase.parseJson(newJson(1, 3000, 2), ""));
+        purchases.put(Purchase.parseJson(newJson(2, 1000, 0), ""));
+        return purchases;
+    }
+
+    private String newJson(int index, long purchaseTime, int purchaseState) {
+        return String.format(Locale.ENGLISH, "{\"orderId\":\"order_%d\",\"productId\":\"sku_%d\",\"purchaseTime\":%d,"
+                + "\"purchaseState\":%d,\"purchaseToken\":\"token_%d\"}", index, index, purchaseTime, purchaseState, index);
+    }
+
+    private Purchases newPurchases(int size) throws JSONException {
+        Purchases purchases = new Purchases();
+        for (int i = 0; i < size; i++) {
+            purchases.put(Purchase.parseJson(String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, i), ""));
+        }
+        return purchases;
+    }
+}
@@ -46,6 +46,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
@@ -108,6 +109,38 @@ public class SecurityTest {
         }
     }
 
+    @Test
+    public void verifyPurchaseDecodedPublicKey()
+            throws NoSuchAlgorithmException, InvalidKeySpecException, IllegalArgumentException {
+
+        Logger logger = new DiscardLogger();
+        PublicKey publicKey = Security.decodePublicKey(DataConverter.TEST_PUBLIC_KEY_BASE_64);
+        String signedData = DataConverter.TEST_JSON_RECEIPT;
+        String signature = mDataSigner.sign(signedData, Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+        String differentSignature = mDataSigner.sign(DataConverter.TEST_JSON_RECEIPT_AUTO_RENEWING_FALSE,
+                Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+
+        for (Security s : mSecurities) {
+            assertThat(s.verifyPurchase(logger, publicKey, signedData, signature)).isTrue();
+            assertThat(s.verifyPurchase(logger, publicKey, signedData, differentSignature)).isFalse();
+            assertThat(s.verifyPurchase(logger, (PublicKey) null, signedData, signature)).isFalse();
+            verify(s, never()).generatePublicKey(anyString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeInvalidPublicKey() {
+        Security.decodePublicKey("base64PublicKey");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildContextWithInvalidPublicKey() {
+        new BillingContext.Builder()
+                .setPublicKeyBase64("base64PublicKey")
+                .setApiVersion(BillingApi.VERSION_3)
+                .build();
+    }
+
     @Test
     public void verifyPurchaseStaticResponseSignedDataEmpty() {
         Logger logger = new DiscardLogger();
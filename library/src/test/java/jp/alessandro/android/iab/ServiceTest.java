@@ -30,8 +30,10 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
@@ -46,6 +48,7 @@ import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -190,6 +193,52 @@ public class ServiceTest {
         latch.await(15, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void getServiceFailedToBind() {
+        BillingContext context = mDataConverter.newBillingContext(mock(Context.class));
+        ServiceBinder conn = new ServiceBinder(context, new Intent(Constants.ACTION_BILLING_SERVICE_BIND));
+
+        when(context.getContext().bindService(
+                any(Intent.class),
+                any(ServiceConnection.class),
+                eq(Context.BIND_AUTO_CREATE))
+        ).thenReturn(false);
+
+        try {
+            conn.getService(1000);
+            throw new IllegalStateException();
+        } catch (BillingException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_BIND_SERVICE_FAILED);
+        }
+        verify(context.getContext()).unbindService(conn);
+    }
+
+    @Test
+    public void getServiceNull() {
+        BillingContext context = mDataConverter.newBillingContext(mock(Context.class));
+        final ServiceBinder conn = new ServiceBinder(context, new Intent(Constants.ACTION_BILLING_SERVICE_BIND));
+
+        when(context.getContext().bindService(
+                any(Intent.class),
+                any(ServiceConnection.class),
+                eq(Context.BIND_AUTO_CREATE))
+        ).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                conn.onServiceConnected(null, null);
+                return true;
+            }
+        });
+
+        try {
+            conn.getService(1000);
+            throw new IllegalStateException();
+        } catch (BillingException e) {
+            assertThat(e.getMessage()).isEqualTo(Constants.ERROR_MSG_BIND_SERVICE_FAILED_SERVICE_NULL);
+        }
+        verify(context.getContext()).unbindService(conn);
+    }
+
     @Test
     public void onServiceConnected() throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.util.Base64;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+
+import jp.alessandro.android.iab.util.DataConverter;
+import jp.alessandro.android.iab.util.DataSigner;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class SignatureVerifierTest {
+
+    private final DataSigner mDataSigner = new DataSigner();
+
+    @Test
+    public void verifySeveralTimes() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignatureVerifier verifier = newVerifier();
+        String signedData = DataConverter.TEST_JSON_RECEIPT;
+        String differentData = DataConverter.TEST_JSON_RECEIPT_AUTO_RENEWING_FALSE;
+        String signature = sign(signedData);
+
+        assertThat(verifier.verify(signedData, signature)).isTrue();
+        assertThat(verifier.verify(differentData, signature)).isFalse();
+        assertThat(verifier.verify(differentData, sign(differentData))).isTrue();
+        assertThat(verifier.verify(signedData, signature)).isTrue();
+    }
+
+    @Test
+    public void verifySignatureWithoutLineBreaks() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignatureVerifier verifier = newVerifier();
+        String signedData = DataConverter.TEST_JSON_RECEIPT;
+        byte[] signatureBytes = Base64.decode(sign(signedData), Base64.DEFAULT);
+        String signature = Base64.encodeToString(signatureBytes, Base64.NO_WRAP);
+
+        assertThat(verifier.verify(signedData, signature)).isTrue();
+    }
+
+    @Test
+    public void verifyMultiByteData() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        SignatureVerifier verifier = newVerifier();
+        String signedData = "{\"productId\":\"アイテム\",\"developerPayload\":\"😀\"}";
+
+        assertThat(verifier.verify(signedData, sign(signedData))).isTrue();
+        assertThat(verifier.verify(DataConverter.TEST_JSON_RECEIPT, sign(DataConverter.TEST_JSON_RECEIPT))).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyBrokenSignature() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        newVerifier().verify(DataConverter.TEST_JSON_RECEIPT, "abcde");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifySignatureWithDataAfterPadding() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        String signature = sign(DataConverter.TEST_JSON_RECEIPT);
+        // A valid signature is cut at its padding, anything after it must be rejected
+        newVerifier().verify(DataConverter.TEST_JSON_RECEIPT, signature.trim() + "=AAAA");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifySignatureWithBadPadding() throws NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        newVerifier().verify(DataConverter.TEST_JSON_RECEIPT, "abc==");
+    }
+
+    @Test
+    public void isFor() throws NoSuchAlgorithmException, InvalidKeyException {
+        SignatureVerifier verifier = newVerifier();
+
+        assertThat(verifier.isFor(Security.decodePublicKey(DataConverter.TEST_PUBLIC_KEY_BASE_64))).isFalse();
+    }
+
+    private SignatureVerifier newVerifier() throws NoSuchAlgorithmException, InvalidKeyException {
+        return new SignatureVerifier(Security.decodePublicKey(DataConverter.TEST_PUBLIC_KEY_BASE_64));
+    }
+
+    private String sign(String data) {
+        return mDataSigner.sign(data, Security.KEY_FACTORY_ALGORITHM, Security.SIGNATURE_ALGORITHM);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import jp.alessandro.android.iab.util.DataConverter;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class StringPoolTest {
+
+    @Test
+    public void getSameInstance() {
+        StringPool pool = new StringPool();
+        String value = pool.get("{\"type\":\"subs\"}", 9, 13);
+
+        assertThat(value).isEqualTo("subs");
+        assertThat(pool.get("[\"subs\"]", 2, 6)).isSameAs(value);
+        assertThat(pool.get(new String("subs"))).isSameAs(value);
+        assertThat(pool.get("inapp")).isNotSameAs(value);
+        assertThat(pool.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void getManyValues() {
+        StringPool pool = new StringPool();
+        for (int i = 0; i < 1000; i++) {
+            pool.get(String.valueOf(i));
+        }
+        assertThat(pool.getSize()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(pool.get(String.valueOf(i))).isEqualTo(String.valueOf(i));
+        }
+        assertThat(pool.getSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void getWhileGrowing() {
+        StringPool pool = new StringPool();
+        for (int i = 0; i < 1000; i++) {
+            String value = "value_" + i;
+            assertThat(pool.get(value)).isSameAs(value);
+
+            String source = "[\"region_" + i + "\"]";
+            assertThat(pool.get(source, 2, source.length() - 2)).isEqualTo("region_" + i);
+        }
+        assertThat(pool.getSize()).isEqualTo(2000);
+    }
+
+    @Test
+    public void shareRepeatedItemFields() throws JSONException {
+        StringPool pool = new StringPool();
+        Item item1 = Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, 1), pool);
+        Item item2 = Item.parseJson(String.format(Locale.ENGLISH, DataConverter.SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS, 2), pool);
+
+        assertThat(item1.getSku()).isNotEqualTo(item2.getSku());
+        assertThat(item1.getType()).isSameAs(item2.getType());
+        assertThat(item1.getCurrency()).isSameAs(item2.getCurrency());
+        assertThat(item1.getSubscriptionPeriod()).isSameAs(item2.getSubscriptionPeriod());
+    }
+
+    @Test
+    public void shareRepeatedPurchaseFields() throws JSONException {
+        StringPool pool = new StringPool();
+        Purchase purchase1 = Purchase.parseJson(String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, 1), "", pool);
+        Purchase purchase2 = Purchase.parseJson(String.format(Locale.ENGLISH, DataConverter.TEST_JSON_RECEIPT, 2), "", pool);
+
+        assertThat(purchase1.getPackageName()).isSameAs(purchase2.getPackageName());
+        assertThat(purchase1.getDeveloperPayload()).isSameAs(purchase2.getDeveloperPayload());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class VerifiedPurchaseCacheTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxEntries() {
+        new VerifiedPurchaseCache(0);
+    }
+
+    @Test
+    public void containsOnlyTheSamePair() {
+        VerifiedPurchaseCache cache = new VerifiedPurchaseCache(10);
+        cache.put("data", "signature");
+
+        assertThat(cache.contains("data", "signature")).isTrue();
+        assertThat(cache.contains("data", "otherSignature")).isFalse();
+        assertThat(cache.contains("otherData", "signature")).isFalse();
+    }
+
+    @Test
+    public void hashCollision() {
+        // "Aa" and "BB" have the same hash code
+        VerifiedPurchaseCache cache = new VerifiedPurchaseCache(10);
+        cache.put("Aa", "signature");
+
+        assertThat(cache.contains("BB", "signature")).isFalse();
+        assertThat(cache.contains("Aa", "signature")).isTrue();
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        VerifiedPurchaseCache cache = new VerifiedPurchaseCache(2);
+        cache.put("data0", "signature0");
+        cache.put("data1", "signature1");
+        cache.contains("data0", "signature0");
+        cache.put("data2", "signature2");
+
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.contains("data0", "signature0")).isTrue();
+        assertThat(cache.contains("data1", "signature1")).isFalse();
+        assertThat(cache.contains("data2", "signature2")).isTrue();
+    }
+
+    @Test
+    public void clear() {
+        VerifiedPurchaseCache cache = new VerifiedPurchaseCache(10);
+        cache.put("data", "signature");
+        cache.clear();
+
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.contains("data", "signature")).isFalse();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Alessandro Yuichi Okimoto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ * Contact email: alessandro@alessandro.jp
+ */
+
+package jp.alessandro.android.iab;
+
+import android.os.Handler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, constants = BuildConfig.class)
+public class WorkThreadTest {
+
+    private static final long IDLE_TIMEOUT = 1000;
+
+    @Test
+    public void startLazily() {
+        WorkThread workThread = new WorkThread(BillingProcessor.WORK_THREAD_NAME, IDLE_TIMEOUT);
+        assertThat(workThread.isRunning()).isFalse();
+
+        Handler handler = workThread.getHandler();
+        assertThat(workThread.isRunning()).isTrue();
+        assertThat(workThread.getHandler()).isSameAs(handler);
+    }
+
+    @Test
+    public void quitWhenIdle() {
+        WorkThread workThread = new WorkThread(BillingProcessor.WORK_THREAD_NAME, IDLE_TIMEOUT);
+        Handler handler = workThread.getHandler();
+
+        shadowOf(handler.getLooper()).getScheduler().advanceBy(IDLE_TIMEOUT);
+        assertThat(workThread.isRunning()).isFalse();
+
+        assertThat(workThread.getHandler()).isNotSameAs(handler);
+        assertThat(workThread.isRunning()).isTrue();
+    }
+
+    @Test
+    public void keepAliveWhileOperationInProgress() {
+        WorkThread workThread = new WorkThread(BillingProcessor.WORK_THREAD_NAME, IDLE_TIMEOUT);
+        Handler handler = workThread.getHandler();
+        workThread.beginOperation();
+
+        shadowOf(handler.getLooper()).getScheduler().advanceBy(IDLE_TIMEOUT * 2);
+        assertThat(workThread.isRunning()).isTrue();
+
+        workThread.endOperation();
+        shadowOf(handler.getLooper()).getScheduler().advanceBy(IDLE_TIMEOUT);
+        assertThat(workThread.isRunning()).isFalse();
+    }
+
+    @Test
+    public void keepAliveWithoutTimeout() {
+        WorkThread workThread = new WorkThread(BillingProcessor.WORK_THREAD_NAME, 0);
+        Handler handler = workThread.getHandler();
+
+        shadowOf(handler.getLooper()).getScheduler().advanceBy(BillingContext.DEFAULT_WORK_THREAD_IDLE_TIMEOUT_MILLIS);
+        assertThat(workThread.isRunning()).isTrue();
+
+        workThread.quit();
+        assertThat(workThread.isRunning()).isFalse();
+    }
+
+    @Test
+    public void notStartedAfterQuit() {
+        WorkThread workThread = new WorkThread(BillingProcessor.WORK_THREAD_NAME, 0);
+        workThread.getHandler();
+        workThread.quit();
+
+        assertThat(workThread.getHandler()).isNull();
+        assertThat(workThread.isRunning()).isFalse();
+    }
+}
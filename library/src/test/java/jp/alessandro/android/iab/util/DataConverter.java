@@ -102,6 +102,22 @@ public class DataConverter {
             "\"introductoryPricePeriod\": \"P1M\"," +
             "\"introductoryPriceCycles\": 3}";
 
+    // The micros are numbers, as sent by Google Play, so it is read by JsonFieldReader instead of org.json
+    public static final String SKU_SUBSCRIPTION_DETAILS_JSON_NUMBER_MICROS = "{" +
+            "\"productId\": \"" + TEST_PRODUCT_ID + "_%d\"," +
+            "\"type\": \"subs\"," +
+            "\"price\": \"¥1080\"," +
+            "\"price_amount_micros\": 10800000," +
+            "\"price_currency_code\": \"JPY\"," +
+            "\"title\": \"Test Product\"," +
+            "\"description\": \"Fast and easy use Android In-App Billing\"," +
+            "\"subscriptionPeriod\": \"P1M\"," +
+            "\"freeTrialPeriod\": \"P7D\"," +
+            "\"introductoryPrice\": \"¥1080\"," +
+            "\"introductoryPriceAmountMicros\": 10800000," +
+            "\"introductoryPricePeriod\": \"P1M\"," +
+            "\"introductoryPriceCycles\": 3}";
+
     private final DataSigner mDataSigner;
 
     private String mKeyFactoryAlgorithm;